@@ -52,6 +52,7 @@ import net.minecraft.world.storage.ISaveHandler;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.server.timings.TickTimes;
 
 import javax.annotation.Nullable;
 
@@ -69,6 +70,7 @@ public class DimensionManager
     }
 
     private static Hashtable<Integer, WorldServer> worlds = new Hashtable<Integer, WorldServer>();
+    private static WorldServer[] loadedWorlds = new WorldServer[0];
     private static boolean hasInit = false;
     private static Hashtable<Integer, Dimension> dimensions = new Hashtable<Integer, Dimension>();
     private static IntArrayList unloadQueue = new IntArrayList();
@@ -157,28 +159,49 @@ public class DimensionManager
     {
         if (check)
         {
-            List<World> allWorlds = Lists.newArrayList(weakWorldMap.keySet());
-            allWorlds.removeAll(worlds.values());
-            for (ListIterator<World> li = allWorlds.listIterator(); li.hasNext(); )
+            checkForLeaks();
+        }
+        return getIDs();
+    }
+
+    /**
+     * Gets the loaded worlds without allocating, for iterating them every tick.
+     *
+     * @param check If the loaded worlds should be checked for leaked ones, see {@link #getIDs(boolean)}
+     * @return The loaded worlds, must not be modified
+     */
+    public static WorldServer[] getWorlds(boolean check)
+    {
+        if (check)
+        {
+            checkForLeaks();
+        }
+        return loadedWorlds;
+    }
+
+    private static void checkForLeaks()
+    {
+        List<World> allWorlds = Lists.newArrayList(weakWorldMap.keySet());
+        allWorlds.removeAll(worlds.values());
+        for (ListIterator<World> li = allWorlds.listIterator(); li.hasNext(); )
+        {
+            World w = li.next();
+            leakedWorlds.add(System.identityHashCode(w));
+        }
+        for (World w : allWorlds)
+        {
+            int leakCount = leakedWorlds.count(System.identityHashCode(w));
+            if (leakCount == 5)
             {
-                World w = li.next();
-                leakedWorlds.add(System.identityHashCode(w));
+                FMLLog.log.debug("The world {} ({}) may have leaked: first encounter (5 occurrences).\n", Integer.toHexString(System.identityHashCode(w)), w.getWorldInfo().getWorldName());
             }
-            for (World w : allWorlds)
+            else if (leakCount % 5 == 0)
             {
-                int leakCount = leakedWorlds.count(System.identityHashCode(w));
-                if (leakCount == 5)
-                {
-                    FMLLog.log.debug("The world {} ({}) may have leaked: first encounter (5 occurrences).\n", Integer.toHexString(System.identityHashCode(w)), w.getWorldInfo().getWorldName());
-                }
-                else if (leakCount % 5 == 0)
-                {
-                    FMLLog.log.debug("The world {} ({}) may have leaked: seen {} times.\n", Integer.toHexString(System.identityHashCode(w)), w.getWorldInfo().getWorldName(), leakCount);
-                }
+                FMLLog.log.debug("The world {} ({}) may have leaked: seen {} times.\n", Integer.toHexString(System.identityHashCode(w)), w.getWorldInfo().getWorldName(), leakCount);
             }
         }
-        return getIDs();
     }
+
     public static Integer[] getIDs()
     {
         return worlds.keySet().toArray(new Integer[worlds.size()]); //Only loaded dims, since usually used to cycle through loaded worlds
@@ -190,13 +213,15 @@ public class DimensionManager
         {
             worlds.put(id, world);
             weakWorldMap.put(world, world);
-            server.worldTickTimes.put(id, new long[100]);
+            server.worldTickTimes.put(id, world.tickTimes.getRecentTicks());
+            TickTimes.register("dim" + id, world.tickTimes);
             FMLLog.log.info("Loading dimension {} ({}) ({})", id, world.getWorldInfo().getWorldName(), world.getMinecraftServer());
         }
         else
         {
             worlds.remove(id);
             server.worldTickTimes.remove(id);
+            TickTimes.unregister("dim" + id);
             FMLLog.log.info("Unloading dimension {}", id);
         }
 
@@ -219,6 +244,7 @@ public class DimensionManager
         }
 
         server.worlds = tmp.toArray(new WorldServer[tmp.size()]);
+        loadedWorlds = worlds.values().toArray(new WorldServer[worlds.size()]);
     }
 
     public static void initDimension(int dim)
@@ -344,6 +370,7 @@ public class DimensionManager
             }
             try
             {
+                w.neighborNotifyQueue.flush(); // Before saving, so nothing queued is lost with the world
                 w.saveAllChunks(true, null);
             }
             catch (MinecraftException e)
@@ -553,6 +553,8 @@ public class ForgeHooks
 
     public static boolean onLivingUpdate(EntityLivingBase entity)
     {
+        if (!MinecraftForge.EVENT_BUS.hasListeners(LivingUpdateEvent.class))
+            return false;
         return MinecraftForge.EVENT_BUS.post(new LivingUpdateEvent(entity));
     }
 
@@ -35,6 +35,8 @@ import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.ClientTickEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
 import net.minecraftforge.fml.common.gameevent.TickEvent.ServerTickEvent;
+import net.minecraftforge.fml.common.network.handshake.MessageBatching;
+import net.minecraftforge.server.timings.TickProfiler;
 
 public class ForgeInternalHandler
 {
@@ -87,7 +89,11 @@ public class ForgeInternalHandler
     @SubscribeEvent
     public void onServerTick(ServerTickEvent event)
     {
+        if (event.phase == TickEvent.Phase.START)
+            TickProfiler.tick();
         WorldWorkerManager.tick(event.phase == TickEvent.Phase.START);
+        if (event.phase == TickEvent.Phase.END)
+            MessageBatching.flushAll();
     }
 
     @SubscribeEvent
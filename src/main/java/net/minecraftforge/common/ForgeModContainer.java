@@ -65,6 +65,7 @@ import net.minecraftforge.items.CapabilityItemHandler;
 import net.minecraftforge.fluids.UniversalBucket;
 import net.minecraftforge.oredict.OreDictionary;
 import net.minecraftforge.oredict.RecipeSorter;
+import net.minecraftforge.server.command.ChunkGenProgress;
 import net.minecraftforge.server.command.ForgeCommand;
 
 import com.google.common.collect.ImmutableList;
@@ -95,6 +96,7 @@ import net.minecraftforge.fml.common.event.FMLServerStoppingEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
+import net.minecraftforge.fml.common.network.PlayerTargetIndex;
 
 import javax.annotation.Nullable;
 
@@ -119,6 +121,11 @@ public class ForgeModContainer extends DummyModContainer implements WorldAccessC
     public static boolean disableStairSlabCulling = false; // Also known as the "DontCullStairsBecauseIUseACrappyTexturePackThatBreaksBasicBlockShapesSoICantTrustBasicBlockCulling" flag
     public static boolean alwaysSetupTerrainOffThread = false; // In RenderGlobal.setupTerrain, always force the chunk render updates to be queued to the thread
     public static int dimensionUnloadQueueDelay = 0;
+    public static int chunkIOCallbackBudget = 0;
+    public static boolean prepareChunkEntitiesAsync = false;
+    public static boolean asyncChunkSaving = false;
+    public static boolean mappedRegionReads = false;
+    public static boolean deferNeighborNotifications = false;
     public static boolean logCascadingWorldGeneration = true; // see Chunk#logCascadingWorldGeneration()
     public static boolean fixVanillaCascading = false; // There are various places in vanilla that cause cascading worldgen. Enabling this WILL change where blocks are placed to prevent this.
                                                        // DO NOT contact Forge about worldgen not 'matching' vanilla if this flag is set.
@@ -307,6 +314,41 @@ public class ForgeModContainer extends DummyModContainer implements WorldAccessC
         prop.setLanguageKey("forge.configgui.dimensionUnloadQueueDelay");
         propOrder.add(prop.getName());
 
+        prop = config.get(Configuration.CATEGORY_GENERAL, "chunkIOCallbackBudget", 0,
+                "The time in milliseconds per tick the server may spend finishing chunks that were loaded asynchronously. " +
+                        "Chunks left over are finished in the next tick. 0 means no limit.", 0, 1000);
+        chunkIOCallbackBudget = prop.getInt(0);
+        prop.setLanguageKey("forge.configgui.chunkIOCallbackBudget");
+        propOrder.add(prop.getName());
+
+        prop = config.get(Configuration.CATEGORY_GENERAL, "prepareChunkEntitiesAsync", false,
+                "Read and validate the entities, tile entities and block ticks of asynchronously loaded chunks on the chunk I/O thread, " +
+                        "so the server thread only has to create them. Leave this disabled if a mod changes how AnvilChunkLoader loads entities.");
+        prepareChunkEntitiesAsync = prop.getBoolean(false);
+        prop.setLanguageKey("forge.configgui.prepareChunkEntitiesAsync");
+        propOrder.add(prop.getName());
+
+        prop = config.get(Configuration.CATEGORY_GENERAL, "asyncChunkSaving", false,
+                "Compress and write saved chunks on a pool of threads, one region file at a time, instead of on the single file I/O thread. " +
+                        "Chunks saved again before they were written are only written once.");
+        asyncChunkSaving = prop.getBoolean(false);
+        prop.setLanguageKey("forge.configgui.asyncChunkSaving");
+        propOrder.add(prop.getName());
+
+        prop = config.get(Configuration.CATEGORY_GENERAL, "mappedRegionReads", false,
+                "Read chunks from memory mapped region files, so several chunks of the same region can be loaded at once. Requires asyncChunkSaving. " +
+                        "Region files stay mapped until the world is saved or unloaded, on Windows they can not be deleted while mapped.");
+        mappedRegionReads = prop.getBoolean(false);
+        prop.setLanguageKey("forge.configgui.mappedRegionReads");
+        propOrder.add(prop.getName());
+
+        prop = config.get(Configuration.CATEGORY_GENERAL, "deferNeighborNotifications", false,
+                "Collect the neighbor notifications of block changes during a tick and do them at the end of the world tick, once per position. " +
+                        "This collapses repeated notifications of the same position, but changes the order of block updates, which can break some redstone contraptions.");
+        deferNeighborNotifications = prop.getBoolean(false);
+        prop.setLanguageKey("forge.configgui.deferNeighborNotifications");
+        propOrder.add(prop.getName());
+
         config.setCategoryPropertyOrder(CATEGORY_GENERAL, propOrder);
 
         propOrder = new ArrayList<String>();
@@ -465,6 +507,7 @@ public class ForgeModContainer extends DummyModContainer implements WorldAccessC
         MinecraftForge.EVENT_BUS.register(MinecraftForge.INTERNAL_HANDLER);
         ForgeChunkManager.captureConfig(evt.getModConfigurationDirectory());
         MinecraftForge.EVENT_BUS.register(this);
+        MinecraftForge.EVENT_BUS.register(PlayerTargetIndex.class);
 
         if (!ForgeModContainer.disableVersionCheck)
         {
@@ -520,6 +563,7 @@ public class ForgeModContainer extends DummyModContainer implements WorldAccessC
     public void serverStarting(FMLServerStartingEvent evt)
     {
         evt.registerServerCommand(new ForgeCommand());
+        ChunkGenProgress.resume(evt.getServer());
     }
 
     @Subscribe
@@ -16,58 +16,176 @@
  * License along with this library; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
  */
+
 package net.minecraftforge.common;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.server.timings.TickTimes;
 
+/**
+ * Runs {@link IWorker}s in the time left over at the end of each server tick.
+ *
+ * All workers share the budget round robin, a worker with a higher {@link IWorker#getPriority()}
+ * gets more calls per round. The budget is what is left of the 50ms tick, but at least 10ms.
+ */
 public class WorldWorkerManager
 {
-    private static List<IWorker> workers = new ArrayList<IWorker>();
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long MIN_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static List<WorkerStats> workers = new ArrayList<WorkerStats>();
     private static long startTime = -1;
+    private static int nextWorker = 0;
+    private static ThreadPoolExecutor asyncPool;
 
     public static void tick(boolean start)
     {
         if (start)
         {
-            startTime = System.currentTimeMillis();
+            startTime = System.nanoTime();
             return;
         }
 
-        IWorker task = getNext();
-        if (task == null)
+        long now = System.nanoTime();
+        runWorkers(now);
+        TickTimes.SERVER.record(TickTimes.Phase.WORLD_WORKERS, System.nanoTime() - now);
+    }
+
+    private static void runWorkers(long now)
+    {
+        List<WorkerStats> active = getActive();
+        if (active.isEmpty())
             return;
 
-        long time = 50 - (System.currentTimeMillis() - startTime);
-        if (time < 10)
-            time = 10; //If ticks are lagging, give us at least 10ms to do something.
-        time += System.currentTimeMillis();
+        long budget = TICK_NANOS - (now - startTime);
+        if (budget < MIN_BUDGET_NANOS)
+            budget = MIN_BUDGET_NANOS; //If ticks are lagging, give us at least 10ms to do something.
+        long end = now + budget;
+
+        int count = active.size();
+        int offset = nextWorker++ % count; // Rotate which worker goes first, so nobody is always last
+        int remaining = count;
+        boolean[] done = new boolean[count];
+        while (remaining > 0)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                int idx = (offset + i) % count;
+                WorkerStats stats = active.get(idx);
+                for (int call = 0; call < stats.priority && !done[idx]; call++)
+                {
+                    long before = System.nanoTime();
+                    if (before >= end)
+                        return;
+
+                    boolean again = stats.worker.doWork();
+
+                    long after = System.nanoTime();
+                    stats.record(after - before, after > end);
+                    if (!stats.worker.hasWork())
+                    {
+                        remove(stats.worker);
+                        done[idx] = true;
+                    }
+                    else if (!again)
+                    {
+                        done[idx] = true; //The worker is done for this tick
+                    }
+                }
+                if (done[idx] && stats.active)
+                {
+                    stats.active = false;
+                    remaining--;
+                }
+            }
+        }
+    }
 
-        while (System.currentTimeMillis() < time)
+    /**
+     * Collects the workers that can be ticked, starting or finishing their async work.
+     */
+    private static synchronized List<WorkerStats> getActive()
+    {
+        List<WorkerStats> ret = new ArrayList<WorkerStats>(workers.size());
+        for (WorkerStats stats : workers)
         {
-            task.work();
+            if (stats.async != null)
+            {
+                if (!stats.async.isDone())
+                    continue;
+                try
+                {
+                    stats.async.get();
+                }
+                catch (InterruptedException | ExecutionException e)
+                {
+                    FMLLog.log.error("Async work of world worker {} failed", stats.worker, e);
+                }
+                stats.async = null;
+            }
 
-            if (!task.hasWork())
+            Runnable async = stats.worker.getAsyncWork();
+            if (async != null)
             {
-                time = 0; //Break loop
-                remove(task);
+                stats.async = getAsyncPool().submit(async);
+                stats.asyncRuns++;
+                continue;
             }
+            stats.active = true;
+            ret.add(stats);
         }
+        return ret;
     }
 
-    public static synchronized void addWorker(IWorker worker)
+    private static ThreadPoolExecutor getAsyncPool()
     {
-        workers.add(worker);
+        if (asyncPool == null)
+        {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            asyncPool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private AtomicInteger count = new AtomicInteger(1);
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "World Worker Thread-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            asyncPool.allowCoreThreadTimeOut(true);
+        }
+        return asyncPool;
     }
 
-    private static synchronized IWorker getNext()
+    public static synchronized void addWorker(IWorker worker)
     {
-        return workers.size() > 0 ? workers.get(0) : null;
+        workers.add(new WorkerStats(worker));
     }
 
     private static synchronized void remove(IWorker worker)
     {
-        workers.remove(worker);
+        workers.removeIf(stats -> stats.worker == worker);
+    }
+
+    /**
+     * @return A snapshot of the statistics of all registered workers
+     */
+    public static synchronized List<WorkerStats> getStats()
+    {
+        return new ArrayList<WorkerStats>(workers);
     }
 
     //Internal only, used to clear everything when the server shuts down.
@@ -76,9 +194,82 @@ public class WorldWorkerManager
         workers.clear();
     }
 
+    /**
+     * Time spent in a worker since it was added.
+     */
+    public static class WorkerStats
+    {
+        private final IWorker worker;
+        private final int priority;
+        private Future<?> async;
+        private boolean active;
+        private long calls;
+        private long nanos;
+        private long maxNanos;
+        private long overruns;
+        private long asyncRuns;
+
+        private WorkerStats(IWorker worker)
+        {
+            this.worker = worker;
+            this.priority = Math.max(1, worker.getPriority());
+        }
+
+        private void record(long time, boolean overrun)
+        {
+            calls++;
+            nanos += time;
+            if (time > maxNanos)
+                maxNanos = time;
+            if (overrun)
+                overruns++;
+        }
+
+        public IWorker getWorker() { return worker; }
+        public int getPriority() { return priority; }
+        public long getCalls() { return calls; }
+        public long getTotalNanos() { return nanos; }
+        public long getMaxNanos() { return maxNanos; }
+        /** The amount of calls that ended after the budget of the tick was used up */
+        public long getOverruns() { return overruns; }
+        public long getAsyncRuns() { return asyncRuns; }
+    }
+
     public static interface IWorker
     {
         boolean hasWork();
         void work();
+
+        /**
+         * Performs a unit of work, called repeatedly while the tick has time left.
+         *
+         * @return False to stop working for the remainder of this tick, e.g. to honour a rate limit
+         */
+        default boolean doWork()
+        {
+            work();
+            return true;
+        }
+
+        /**
+         * The share of the tick budget this worker gets relative to the others,
+         * {@link #doWork()} is called up to this many times per round.
+         */
+        default int getPriority()
+        {
+            return 1;
+        }
+
+        /**
+         * Work that is safe to run off the server thread, like preparing data for the next calls to {@link #doWork()}.
+         * It is run on a shared pool, and the worker is not ticked until it finished.
+         *
+         * @return The work to run, or null to be ticked on the server thread
+         */
+        @Nullable
+        default Runnable getAsyncWork()
+        {
+            return null;
+        }
     }
 }
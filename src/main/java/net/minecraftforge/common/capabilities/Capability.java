@@ -150,11 +150,21 @@ public class Capability<T>
     private final String name;
     private final IStorage<T> storage;
     private final Callable<? extends T> factory;
+    private final int index;
 
-    Capability(String name, IStorage<T> storage, Callable<? extends T> factory)
+    Capability(String name, IStorage<T> storage, Callable<? extends T> factory, int index)
     {
         this.name = name;
         this.storage = storage;
         this.factory = factory;
+        this.index = index;
+    }
+
+    /**
+     * Dense index assigned in registration order, used by the {@link CapabilityDispatcher} lookup tables.
+     */
+    int getIndex()
+    {
+        return index;
     }
 }
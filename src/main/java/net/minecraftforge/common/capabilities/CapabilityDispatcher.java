@@ -21,10 +21,10 @@ package net.minecraftforge.common.capabilities;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-
-import com.google.common.collect.Lists;
+import java.util.Objects;
 
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
@@ -41,55 +41,190 @@ import net.minecraftforge.common.util.INBTSerializable;
  *
  * Internally the handlers are baked into arrays for fast iteration.
  * The ResourceLocations will be used for the NBT Key when serializing.
+ *
+ * If any of the handlers is a {@link IDeclaredCapabilityProvider} lookups go through a small table
+ * keyed by capability and side, built lazily from the declarations, so only the handlers that
+ * can answer are asked. The table only holds the pairs that were actually queried, and is replaced
+ * as a whole when it grows, so readers never see it half built.
  */
 public final class CapabilityDispatcher implements INBTSerializable<NBTTagCompound>, ICapabilityProvider
 {
+    private static final int SIDES = EnumFacing.VALUES.length + 1;
+    private static final ICapabilityProvider[] EMPTY = new ICapabilityProvider[0];
     private ICapabilityProvider[] caps;
     private INBTSerializable<NBTBase>[] writers;
     private String[] names;
+    private final boolean indexed;
+    private volatile Lookup lookup = Lookup.EMPTY;
 
     public CapabilityDispatcher(Map<ResourceLocation, ICapabilityProvider> list)
     {
         this(list, null);
     }
 
-    @SuppressWarnings("unchecked")
     public CapabilityDispatcher(Map<ResourceLocation, ICapabilityProvider> list, @Nullable ICapabilityProvider parent)
     {
-        List<ICapabilityProvider> lstCaps = Lists.newArrayList();
-        List<INBTSerializable<NBTBase>> lstWriters = Lists.newArrayList();
-        List<String> lstNames = Lists.newArrayList();
+        this(list.keySet().toArray(new ResourceLocation[list.size()]), list.values().toArray(new ICapabilityProvider[list.size()]), list.size(), parent);
+    }
+
+    /**
+     * Builds the dispatcher from parallel arrays of names and providers, without an intermediate map.
+     *
+     * @param keys The names of the providers, used as NBT keys
+     * @param list The providers
+     * @param count The number of valid entries in both arrays
+     * @param parent A provider to ask before the others, may be null
+     */
+    @SuppressWarnings("unchecked")
+    public CapabilityDispatcher(ResourceLocation[] keys, ICapabilityProvider[] list, int count, @Nullable ICapabilityProvider parent)
+    {
+        int size = count + (parent == null ? 0 : 1);
+        caps = new ICapabilityProvider[size];
+        writers = new INBTSerializable[size];
+        names = new String[size];
+        int capCount = 0;
+        int writerCount = 0;
 
         if (parent != null) // Parents go first!
         {
-            lstCaps.add(parent);
+            caps[capCount++] = parent;
             if (parent instanceof INBTSerializable)
             {
-                lstWriters.add((INBTSerializable<NBTBase>)parent);
-                lstNames.add("Parent");
+                writers[writerCount] = (INBTSerializable<NBTBase>)parent;
+                names[writerCount++] = "Parent";
             }
         }
 
-        for (Map.Entry<ResourceLocation, ICapabilityProvider> entry : list.entrySet())
+        for (int x = 0; x < count; x++)
         {
-            ICapabilityProvider prov = entry.getValue();
-            lstCaps.add(prov);
+            ICapabilityProvider prov = list[x];
+            caps[capCount++] = prov;
             if (prov instanceof INBTSerializable)
             {
-                lstWriters.add((INBTSerializable<NBTBase>)prov);
-                lstNames.add(entry.getKey().toString());
+                writers[writerCount] = (INBTSerializable<NBTBase>)prov;
+                names[writerCount++] = keys[x].toString();
             }
         }
 
-        caps = lstCaps.toArray(new ICapabilityProvider[lstCaps.size()]);
-        writers = lstWriters.toArray(new INBTSerializable[lstWriters.size()]);
-        names = lstNames.toArray(new String[lstNames.size()]);
+        if (writerCount != size)
+        {
+            writers = Arrays.copyOf(writers, writerCount);
+            names = Arrays.copyOf(names, writerCount);
+        }
+
+        boolean declared = false;
+        for (ICapabilityProvider prov : caps)
+        {
+            if (prov instanceof IDeclaredCapabilityProvider)
+            {
+                ((IDeclaredCapabilityProvider)prov).setInvalidator(this::invalidate);
+                declared = true;
+            }
+        }
+        indexed = declared;
+    }
+
+    /**
+     * Drops the lookup table built from the {@link IDeclaredCapabilityProvider} declarations,
+     * it is rebuilt on demand.
+     */
+    public synchronized void invalidate()
+    {
+        this.lookup = Lookup.EMPTY;
+    }
+
+    private ICapabilityProvider[] getProviders(Capability<?> capability, @Nullable EnumFacing facing)
+    {
+        int key = capability.getIndex() * SIDES + (facing == null ? SIDES - 1 : facing.getIndex());
+        ICapabilityProvider[] ret = this.lookup.get(key);
+        return ret != null ? ret : buildProviders(key, capability, facing);
+    }
+
+    private synchronized ICapabilityProvider[] buildProviders(int key, Capability<?> capability, @Nullable EnumFacing facing)
+    {
+        ICapabilityProvider[] ret = this.lookup.get(key);
+        if (ret != null)
+            return ret;
+
+        ret = new ICapabilityProvider[caps.length];
+        int count = 0;
+        for (ICapabilityProvider cap : caps)
+        {
+            if (!(cap instanceof IDeclaredCapabilityProvider) || ((IDeclaredCapabilityProvider)cap).declaresCapability(capability, facing))
+            {
+                ret[count++] = cap;
+            }
+        }
+        ret = count == 0 ? EMPTY : count == caps.length ? caps : Arrays.copyOf(ret, count);
+        this.lookup = this.lookup.with(key, ret);
+        return ret;
+    }
+
+    /**
+     * Immutable open addressing map from capability and side to the providers that declared it.
+     * Keys are stored plus one, so zero marks an empty slot.
+     */
+    private static final class Lookup
+    {
+        private static final Lookup EMPTY = new Lookup(new int[4], new ICapabilityProvider[4][], 0);
+        private final int[] keys;
+        private final ICapabilityProvider[][] values;
+        private final int size;
+
+        private Lookup(int[] keys, ICapabilityProvider[][] values, int size)
+        {
+            this.keys = keys;
+            this.values = values;
+            this.size = size;
+        }
+
+        @Nullable
+        ICapabilityProvider[] get(int key)
+        {
+            int mask = keys.length - 1;
+            for (int x = mix(key) & mask; keys[x] != 0; x = (x + 1) & mask)
+            {
+                if (keys[x] == key + 1)
+                    return values[x];
+            }
+            return null;
+        }
+
+        Lookup with(int key, ICapabilityProvider[] value)
+        {
+            int capacity = (size + 1) * 2 > keys.length ? keys.length * 2 : keys.length;
+            int[] newKeys = new int[capacity];
+            ICapabilityProvider[][] newValues = new ICapabilityProvider[capacity][];
+            for (int x = 0; x < keys.length; x++)
+            {
+                if (keys[x] != 0)
+                    put(newKeys, newValues, keys[x], values[x]);
+            }
+            put(newKeys, newValues, key + 1, value);
+            return new Lookup(newKeys, newValues, size + 1);
+        }
+
+        private static void put(int[] keys, ICapabilityProvider[][] values, int stored, ICapabilityProvider[] value)
+        {
+            int mask = keys.length - 1;
+            int x = mix(stored - 1) & mask;
+            while (keys[x] != 0)
+                x = (x + 1) & mask;
+            keys[x] = stored;
+            values[x] = value;
+        }
+
+        private static int mix(int key)
+        {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
     }
 
     @Override
     public boolean hasCapability(@Nonnull Capability<?> capability, @Nullable EnumFacing facing)
     {
-        for (ICapabilityProvider cap : caps)
+        for (ICapabilityProvider cap : indexed ? getProviders(capability, facing) : caps)
         {
             if (cap.hasCapability(capability, facing))
             {
@@ -103,7 +238,7 @@ public final class CapabilityDispatcher implements INBTSerializable<NBTTagCompou
     @Nullable
     public <T> T getCapability(@Nonnull Capability<T> capability, @Nullable EnumFacing facing)
     {
-        for (ICapabilityProvider cap : caps)
+        for (ICapabilityProvider cap : indexed ? getProviders(capability, facing) : caps)
         {
             T ret = cap.getCapability(capability, facing);
             if (ret != null)
@@ -141,6 +276,24 @@ public final class CapabilityDispatcher implements INBTSerializable<NBTTagCompou
     {                                                        // Only compares serializeable caps.
         if (other == null) return this.writers.length == 0;  // Done this way so we can do some pre-checks before doing the costly NBT serialization and compare
         if (this.writers.length == 0) return other.writers.length == 0;
-        return this.serializeNBT().equals(other.serializeNBT());
+        if (this == other) return true;
+        if (!Arrays.equals(this.names, other.names)) return this.serializeNBT().equals(other.serializeNBT());
+
+        // Same providers in the same order, compare them one by one and only serialize the ones that can't compare themselves
+        for (int x = 0; x < writers.length; x++)
+        {
+            INBTSerializable<NBTBase> mine = writers[x];
+            INBTSerializable<NBTBase> theirs = other.writers[x];
+            if (mine instanceof ICapabilityComparable && theirs != null && mine.getClass() == theirs.getClass())
+            {
+                if (!((ICapabilityComparable)mine).isCapabilityEqual((ICapabilityComparable)theirs))
+                    return false;
+            }
+            else if (!Objects.equals(mine.serializeNBT(), theirs.serializeNBT()))
+            {
+                return false;
+            }
+        }
+        return true;
     }
 }
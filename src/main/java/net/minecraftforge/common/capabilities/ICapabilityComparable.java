@@ -0,0 +1,39 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.capabilities;
+
+/**
+ * Optional contract for serializable capability providers attached to ItemStacks.
+ *
+ * ItemStack equality compares the serializable capabilities of both stacks. Without this interface
+ * that is done by serializing both providers to NBT and comparing the tags, which is expensive for
+ * code that compares stacks constantly, like inventory sorting and stacking checks.
+ */
+public interface ICapabilityComparable
+{
+    /**
+     * Compares this provider with the provider attached under the same key to another object.
+     * Must return the same result as comparing the serialized NBT of both providers would.
+     *
+     * @param other The other provider, of the same class as this one
+     * @return True if both providers hold equivalent data
+     */
+    boolean isCapabilityEqual(ICapabilityComparable other);
+}
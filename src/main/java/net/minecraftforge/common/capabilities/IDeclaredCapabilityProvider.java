@@ -0,0 +1,60 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.capabilities;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.minecraft.util.EnumFacing;
+
+/**
+ * A capability provider that declares up front which capabilities it can expose.
+ *
+ * When attached through the AttachCapabilitiesEvent the {@link CapabilityDispatcher} builds a lookup table
+ * per capability and side from these declarations, and only asks the providers that declared the capability,
+ * instead of asking every attached provider on every call.
+ * Providers that do not implement this interface are always asked, in attachment order.
+ */
+public interface IDeclaredCapabilityProvider extends ICapabilityProvider
+{
+    /**
+     * Declares if this provider can return the capability on the given side.
+     * {@link #hasCapability(Capability, EnumFacing)} and {@link #getCapability(Capability, EnumFacing)} will
+     * not be called for capabilities that are not declared.
+     *
+     * The answer is cached by the dispatcher, if it changes the provider must call the invalidator
+     * passed to {@link #setInvalidator(Runnable)}. Declaring a capability that is not actually available
+     * at the moment is fine, the provider is still asked.
+     *
+     * @param capability The capability to check
+     * @param facing The Side to check from:
+     *   CAN BE NULL. Null is defined to represent 'internal' or 'self'
+     * @return True if this provider may support the capability
+     */
+    boolean declaresCapability(@Nonnull Capability<?> capability, @Nullable EnumFacing facing);
+
+    /**
+     * Called by the dispatcher this provider is attached to.
+     * Running the invalidator drops the cached lookup table, so the declarations are queried again.
+     *
+     * @param invalidator Drops the dispatcher's lookup table
+     */
+    default void setInvalidator(Runnable invalidator) {}
+}
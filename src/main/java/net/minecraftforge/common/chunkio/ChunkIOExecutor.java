@@ -19,30 +19,56 @@
 
 package net.minecraftforge.common.chunkio;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
 
 import com.google.common.collect.Maps;
 
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraftforge.common.ForgeChunkManager;
+import net.minecraftforge.common.ForgeModContainer;
 import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.server.timings.TickTimes;
 
+/**
+ * Loads chunks for the server thread on a pool of I/O threads.
+ *
+ * Queued chunks are loaded in order of their distance to the nearest player of their world when they
+ * were queued, force loaded chunks first. Once a thread reads a chunk it also reads the other queued chunks
+ * of the same region file, most urgent first, so a region is read in one go instead of threads taking turns
+ * on its lock. It stops once a chunk waiting in the pool is more urgent than the rest of the region.
+ * Loaded chunks are handed back to the server thread through a completion queue which is drained
+ * in {@link #tick()}, within the time budget set by {@link ForgeModContainer#chunkIOCallbackBudget}.
+ */
 public class ChunkIOExecutor
 {
     private static final int BASE_THREADS = 1;
     private static final int PLAYERS_PER_THREAD = 50;
+    private static final int REGION_BATCH_SIZE = 32;
+    private static final int LATENCY_SAMPLES = 1024;
 
     private static final Map<QueuedChunk, ChunkIOProvider> tasks = Maps.newConcurrentMap();
+    private static final Map<QueuedChunk, Queue<ChunkIOProvider>> regionTasks = Maps.newConcurrentMap();
+    private static final Queue<ChunkIOProvider> finished = new ConcurrentLinkedQueue<ChunkIOProvider>();
     private static final ThreadPoolExecutor pool = new ThreadPoolExecutor(BASE_THREADS, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
-        new LinkedBlockingQueue<Runnable>(),
+        new PriorityBlockingQueue<Runnable>(),
         new ThreadFactory()
         {
             private AtomicInteger count = new AtomicInteger(1);
@@ -56,41 +82,34 @@ public class ChunkIOExecutor
         }
     );
 
+    private static final long[] loadLatencies = new long[LATENCY_SAMPLES];
+    private static int loadLatencyIndex = 0;
+    private static int loadLatencyCount = 0;
+    private static final LongAdder syncLoads = new LongAdder();
+    private static final LongAdder syncLoadNanos = new LongAdder();
+
     //Load the chunk completely in this thread. Dequeue as needed...
     public static Chunk syncChunkLoad(World world, AnvilChunkLoader loader, ChunkProviderServer provider, int x, int z)
     {
+        long start = System.nanoTime();
         QueuedChunk key = new QueuedChunk(x, z, world);
         ChunkIOProvider task = tasks.remove(key); // Remove task because we will call the sync callbacks directly
         if (task != null)
         {
-            if (!pool.remove(task)) // If it wasn't in the pool, and run hasn't finished, then wait for the async thread.
+            // If the task was not run yet load the chunk here, otherwise wait for the async thread.
+            // The stale entry left in the pool is skipped once it is dequeued.
+            if (!task.load())
             {
-                synchronized(task)
-                {
-                    while (!task.runFinished())
-                    {
-                        try
-                        {
-                            task.wait();
-                        }
-                        catch (InterruptedException e)
-                        {
-                            e.printStackTrace(); // Something happened? Log it?
-                        }
-                    }
-                }
-            }
-            else
-            {
-                // If the task was not run yet we still need to load the chunk
-                task.run();
+                task.awaitLoad();
             }
         }
         else
         {
             task = new ChunkIOProvider(key, loader, provider);
-            task.run();
+            task.load();
         }
+        syncLoads.increment();
+        syncLoadNanos.add(System.nanoTime() - start);
         task.syncCallback();
         return task.getChunk();
     }
@@ -102,9 +121,16 @@ public class ChunkIOExecutor
         ChunkIOProvider task = tasks.get(key);
         if (task == null)
         {
-            task = new ChunkIOProvider(key, loader, provider);
+            task = new ChunkIOProvider(key, loader, provider, getPriority(world, x, z));
             task.addCallback(runnable); // Add before calling execute for thread safety
             tasks.put(key, task);
+            final ChunkIOProvider queued = task;
+            regionTasks.compute(getRegion(key), (k, v) -> {
+                if (v == null)
+                    v = new PriorityQueue<ChunkIOProvider>();
+                v.add(queued);
+                return v;
+            });
             pool.execute(task);
         }
         else
@@ -129,7 +155,10 @@ public class ChunkIOExecutor
         if (!task.hasCallback())
         {
             tasks.remove(key);
-            pool.remove(task);
+            if (task.claim()) // Not loaded yet, the pool will skip it once it is dequeued
+            {
+                onClaimed(task);
+            }
         }
     }
 
@@ -140,17 +169,154 @@ public class ChunkIOExecutor
 
     public static void tick()
     {
-        Iterator<ChunkIOProvider> itr = tasks.values().iterator();
-        while (itr.hasNext())
+        long start = System.nanoTime();
+        long budget = ForgeModContainer.chunkIOCallbackBudget;
+        long deadline = budget > 0 ? start + TimeUnit.MILLISECONDS.toNanos(budget) : 0;
+        ChunkIOProvider task;
+        while ((task = finished.poll()) != null)
         {
-            ChunkIOProvider task = itr.next();
-            if (task.runFinished())
+            // Tasks that were loaded synchronously or dropped in the meantime are no longer in the map
+            if (tasks.remove(task.chunkInfo, task) && task.hasCallback())
             {
-                if (task.hasCallback())
-                    task.syncCallback();
-
-                itr.remove();
+                task.syncCallback();
+                if (deadline != 0 && System.nanoTime() > deadline)
+                    break;
             }
         }
+        TickTimes.SERVER.record(TickTimes.Phase.CHUNK_IO, System.nanoTime() - start);
+    }
+
+    /**
+     * Loads other queued chunks of the same region file as the task that was just loaded.
+     * Called from the I/O threads.
+     */
+    static void loadRegionBatch(ChunkIOProvider task)
+    {
+        QueuedChunk region = getRegion(task.chunkInfo);
+        for (int x = 0; x < REGION_BATCH_SIZE; x++)
+        {
+            ChunkIOProvider next = pollRegionTask(region);
+            if (next == null)
+                return;
+            next.load();
+        }
+    }
+
+    /**
+     * @return The most urgent queued chunk of the region, or null if there is none or a chunk waiting in the pool is more urgent
+     */
+    @Nullable
+    private static ChunkIOProvider pollRegionTask(QueuedChunk region)
+    {
+        Runnable head = pool.getQueue().peek();
+        long urgent = head instanceof ChunkIOProvider ? ((ChunkIOProvider)head).getPriority() : Long.MAX_VALUE;
+        ChunkIOProvider[] ret = new ChunkIOProvider[1];
+        regionTasks.computeIfPresent(region, (k, v) -> {
+            ChunkIOProvider next = v.peek();
+            if (next != null && next.getPriority() <= urgent)
+                ret[0] = v.poll();
+            return v.isEmpty() ? null : v;
+        });
+        return ret[0];
+    }
+
+    static void onClaimed(ChunkIOProvider task)
+    {
+        regionTasks.computeIfPresent(getRegion(task.chunkInfo), (k, v) -> {
+            v.remove(task);
+            return v.isEmpty() ? null : v;
+        });
+    }
+
+    static void onLoaded(ChunkIOProvider task, long latency)
+    {
+        finished.add(task);
+        synchronized (loadLatencies)
+        {
+            loadLatencies[loadLatencyIndex] = latency;
+            loadLatencyIndex = (loadLatencyIndex + 1) % LATENCY_SAMPLES;
+            loadLatencyCount = Math.min(loadLatencyCount + 1, LATENCY_SAMPLES);
+        }
+    }
+
+    /**
+     * Chunks are loaded closest to any player first, force loaded chunks before all others.
+     */
+    private static long getPriority(World world, int x, int z)
+    {
+        if (ForgeChunkManager.getPersistentChunksFor(world).containsKey(new ChunkPos(x, z)))
+        {
+            return -1;
+        }
+
+        long priority = Long.MAX_VALUE;
+        for (EntityPlayer player : world.playerEntities)
+        {
+            long dx = (MathHelper.floor(player.posX) >> 4) - x;
+            long dz = (MathHelper.floor(player.posZ) >> 4) - z;
+            priority = Math.min(priority, dx * dx + dz * dz);
+        }
+        return priority;
+    }
+
+    // Region files hold 32x32 chunks, reuse QueuedChunk as the key for a region of a world
+    private static QueuedChunk getRegion(QueuedChunk chunk)
+    {
+        return new QueuedChunk(chunk.x >> 5, chunk.z >> 5, chunk.world);
+    }
+
+    /**
+     * @return The number of chunks that were queued and not yet handed to the server thread
+     */
+    public static int getPendingCount()
+    {
+        return tasks.size();
+    }
+
+    /**
+     * @return The number of chunks that were loaded and wait for the server thread
+     */
+    public static int getFinishedCount()
+    {
+        return finished.size();
+    }
+
+    /**
+     * Returns a percentile of the time between queueing a chunk and its data being loaded,
+     * over the last 1024 loads.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency in nanoseconds, or 0 if no chunk was loaded yet
+     */
+    public static long getLoadLatency(double percentile)
+    {
+        long[] samples;
+        synchronized (loadLatencies)
+        {
+            samples = Arrays.copyOf(loadLatencies, loadLatencyCount);
+        }
+        if (samples.length == 0)
+        {
+            return 0;
+        }
+        Arrays.sort(samples);
+        int index = (int)Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return samples[MathHelper.clamp(index, 0, samples.length - 1)];
+    }
+
+    /**
+     * @return The number of chunks the server thread had to load synchronously
+     */
+    public static long getSyncLoadCount()
+    {
+        return syncLoads.sum();
+    }
+
+    /**
+     * @return The total time in nanoseconds the server thread spent loading or waiting for chunks in {@link #syncChunkLoad}
+     */
+    public static long getSyncLoadNanos()
+    {
+        return syncLoadNanos.sum();
     }
 }
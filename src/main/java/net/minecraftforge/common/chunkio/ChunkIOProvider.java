@@ -24,29 +24,62 @@ import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraftforge.common.ForgeModContainer;
 import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.world.ChunkDataEvent;
 import net.minecraftforge.fml.common.FMLLog;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-class ChunkIOProvider implements Runnable
+class ChunkIOProvider implements Runnable, Comparable<ChunkIOProvider>
 {
-    private final QueuedChunk chunkInfo;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    final QueuedChunk chunkInfo;
     private final AnvilChunkLoader loader;
     private final ChunkProviderServer provider;
+    private final long priority;
+    private final long sequence = SEQUENCE.getAndIncrement();
+    private final long queueTime = System.nanoTime();
 
     private Chunk chunk;
     private NBTTagCompound nbt;
+    private PreparedChunkData prepared;
     private final ConcurrentLinkedQueue<Runnable> callbacks = new ConcurrentLinkedQueue<Runnable>();
-    private boolean ran = false;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private volatile boolean ran = false;
 
     ChunkIOProvider(QueuedChunk chunk, AnvilChunkLoader loader, ChunkProviderServer provider)
+    {
+        this(chunk, loader, provider, 0);
+    }
+
+    /**
+     * @param priority The load priority, lower values are loaded first
+     */
+    ChunkIOProvider(QueuedChunk chunk, AnvilChunkLoader loader, ChunkProviderServer provider, long priority)
     {
         this.chunkInfo = chunk;
         this.loader = loader;
         this.provider = provider;
+        this.priority = priority;
+    }
+
+    long getPriority()
+    {
+        return this.priority;
+    }
+
+    @Override
+    public int compareTo(ChunkIOProvider other)
+    {
+        int ret = Long.compare(this.priority, other.priority);
+        if (ret == 0)
+            ret = Long.compare(this.sequence, other.sequence);
+        return ret;
     }
 
     public void addCallback(Runnable callback)
@@ -61,6 +94,36 @@ class ChunkIOProvider implements Runnable
     @Override
     public void run() // async stuff
     {
+        if (this.load())
+        {
+            ChunkIOExecutor.loadRegionBatch(this);
+        }
+    }
+
+    /**
+     * Claims this task so it is only ever loaded once, no matter if it is loaded by the pool,
+     * as part of a region batch, or synchronously by the server thread.
+     *
+     * @return False if the task was already claimed
+     */
+    boolean claim()
+    {
+        return this.claimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Loads the chunk data in the calling thread, unless the task was already claimed.
+     *
+     * @return True if the chunk was loaded by this call
+     */
+    boolean load()
+    {
+        if (!this.claim())
+        {
+            return false;
+        }
+        ChunkIOExecutor.onClaimed(this);
+
         synchronized(this)
         {
             Object[] data = null;
@@ -77,11 +140,51 @@ class ChunkIOProvider implements Runnable
             {
                 this.nbt   = (NBTTagCompound)data[1];
                 this.chunk = (Chunk)data[0];
+
+                if (ForgeModContainer.prepareChunkEntitiesAsync)
+                {
+                    try
+                    {
+                        this.prepared = PreparedChunkData.prepare(this.nbt.getCompoundTag("Level"));
+                    }
+                    catch (RuntimeException e)
+                    {
+                        FMLLog.log.error("Failed to prepare chunk entities async, they will be loaded on the server thread.", e);
+                    }
+                }
             }
 
             this.ran = true;
             this.notifyAll();
         }
+
+        ChunkIOExecutor.onLoaded(this, System.nanoTime() - this.queueTime);
+        return true;
+    }
+
+    /**
+     * Blocks until the chunk data was loaded by whichever thread claimed this task.
+     */
+    synchronized void awaitLoad()
+    {
+        // Keep waiting when interrupted, returning without the chunk would make the caller generate it again
+        boolean interrupted = false;
+        while (!this.ran)
+        {
+            try
+            {
+                this.wait();
+            }
+            catch (InterruptedException e)
+            {
+                FMLLog.log.warn("Interrupted while waiting for chunk {} to load, still waiting.", this.chunkInfo);
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
     }
 
     // sync stuff
@@ -94,7 +197,10 @@ class ChunkIOProvider implements Runnable
         }
 
         // Load Entities
-        this.loader.loadEntities(this.chunkInfo.world, this.nbt.getCompoundTag("Level"), this.chunk);
+        if (this.prepared != null)
+            this.prepared.load(this.chunkInfo.world, this.chunk);
+        else
+            this.loader.loadEntities(this.chunkInfo.world, this.nbt.getCompoundTag("Level"), this.chunk);
 
         MinecraftForge.EVENT_BUS.post(new ChunkDataEvent.Load(this.chunk, this.nbt)); // Don't call ChunkDataEvent.Load async
 
@@ -0,0 +1,301 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.chunkio;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Maps;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import net.minecraft.world.storage.IThreadedFileIO;
+import net.minecraft.world.storage.ThreadedFileIOBase;
+import net.minecraftforge.fml.common.FMLLog;
+
+/**
+ * Writes saved chunks to their region files on a pool of threads, used when
+ * {@link net.minecraftforge.common.ForgeModContainer#asyncChunkSaving} is enabled.
+ *
+ * The chunk NBT is still built on the server thread. Saves are queued per region file,
+ * a chunk that is saved again before it was written only keeps its latest data.
+ * Region files are pinned in {@link RegionFileCache} while they are written, so they are not closed
+ * under the writer, and every other reader and writer of the region uses the same RegionFile. Each region is written by at most one thread at a time, which compresses and writes
+ * all chunks queued for that region in one go, ordered by their position in the region header.
+ * Different regions are written in parallel.
+ *
+ * Chunks are readable through {@link #getPendingChunk(AnvilChunkLoader, ChunkPos)} until they are written.
+ * {@link #flush(AnvilChunkLoader)} blocks until all queued chunks of a loader are written, and
+ * {@link ThreadedFileIOBase#waitForFinish()} waits for all queued chunks, so unloading a world still
+ * only closes its region files once all of its chunks are on disk. For that a single {@link Barrier}
+ * is queued on the file IO thread while any region has unwritten chunks, it never blocks that thread.
+ */
+public class ChunkSaveExecutor
+{
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    private static final Map<RegionKey, RegionQueue> regions = Maps.newConcurrentMap();
+    private static final ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory()
+        {
+            private AtomicInteger count = new AtomicInteger(1);
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "Chunk Save Executor Thread-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }
+    );
+
+    static
+    {
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public static void queueChunkSave(AnvilChunkLoader loader, ChunkPos pos, NBTTagCompound nbt)
+    {
+        regions.compute(new RegionKey(loader.chunkSaveLocation, pos.x >> 5, pos.z >> 5), (k, v) -> {
+            if (v == null)
+                v = new RegionQueue(k);
+            v.add(pos, nbt);
+            return v;
+        });
+    }
+
+    /**
+     * @return The data of the chunk if it is queued to be written, or null
+     */
+    @Nullable
+    public static NBTTagCompound getPendingChunk(AnvilChunkLoader loader, ChunkPos pos)
+    {
+        RegionQueue queue = regions.get(new RegionKey(loader.chunkSaveLocation, pos.x >> 5, pos.z >> 5));
+        return queue == null ? null : queue.get(pos);
+    }
+
+    /**
+     * Blocks until all chunks queued for the loader are written to their region files.
+     */
+    public static void flush(AnvilChunkLoader loader)
+    {
+        for (RegionQueue queue : regions.values())
+        {
+            if (queue.key.dir.equals(loader.chunkSaveLocation))
+                queue.awaitWritten();
+        }
+    }
+
+    private static void writeChunk(File dir, ChunkPos pos, NBTTagCompound nbt)
+    {
+        RegionFile region = RegionFileCache.acquireRegionFile(dir, pos.x, pos.z, true);
+        try
+        {
+            DataOutputStream out = region.getChunkDataOutputStream(pos.x & 31, pos.z & 31);
+            CompressedStreamTools.write(nbt, out);
+            out.close();
+        }
+        catch (Exception e)
+        {
+            FMLLog.log.error("Failed to save chunk {} in {}", pos, dir, e);
+        }
+        finally
+        {
+            RegionFileCache.releaseRegionFile(dir, pos.x, pos.z);
+        }
+    }
+
+    private static class RegionKey
+    {
+        private final File dir;
+        private final int x;
+        private final int z;
+
+        private RegionKey(File dir, int x, int z)
+        {
+            this.dir = dir;
+            this.x = x;
+            this.z = z;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (x * 31 + z * 29) ^ dir.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object)
+        {
+            if (object instanceof RegionKey)
+            {
+                RegionKey other = (RegionKey) object;
+                return x == other.x && z == other.z && dir.equals(other.dir);
+            }
+            return false;
+        }
+    }
+
+    private static class RegionQueue implements Runnable
+    {
+        private final RegionKey key;
+        private Map<ChunkPos, NBTTagCompound> pending = new HashMap<ChunkPos, NBTTagCompound>();
+        private Map<ChunkPos, NBTTagCompound> writing = Collections.emptyMap();
+        private Barrier barrier;
+
+        private RegionQueue(RegionKey key)
+        {
+            this.key = key;
+        }
+
+        synchronized void add(ChunkPos pos, NBTTagCompound nbt)
+        {
+            pending.put(pos, nbt);
+            if (barrier == null)
+            {
+                barrier = Barrier.acquire();
+                pool.execute(this);
+            }
+        }
+
+        @Nullable
+        synchronized NBTTagCompound get(ChunkPos pos)
+        {
+            NBTTagCompound nbt = pending.get(pos);
+            return nbt != null ? nbt : writing.get(pos);
+        }
+
+        synchronized void awaitWritten()
+        {
+            // Keep waiting when interrupted, callers rely on the chunks being written once this returns
+            boolean interrupted = false;
+            while (barrier != null)
+            {
+                try
+                {
+                    this.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                List<Map.Entry<ChunkPos, NBTTagCompound>> batch;
+                synchronized (this)
+                {
+                    writing = Collections.emptyMap();
+                    if (pending.isEmpty())
+                    {
+                        barrier.release();
+                        barrier = null;
+                        this.notifyAll();
+                        break;
+                    }
+                    writing = pending;
+                    pending = new HashMap<ChunkPos, NBTTagCompound>();
+                    batch = new ArrayList<Map.Entry<ChunkPos, NBTTagCompound>>(writing.entrySet());
+                }
+
+                // Write in the order of the region header
+                batch.sort(Comparator.comparingInt(e -> (e.getKey().z & 31) * 32 + (e.getKey().x & 31)));
+                for (Map.Entry<ChunkPos, NBTTagCompound> entry : batch)
+                {
+                    writeChunk(key.dir, entry.getKey(), entry.getValue());
+                }
+            }
+            regions.computeIfPresent(key, (k, v) -> v == this && v.isIdle() ? null : v);
+        }
+
+        private synchronized boolean isIdle()
+        {
+            return barrier == null;
+        }
+    }
+
+    /**
+     * Keeps {@link ThreadedFileIOBase#waitForFinish()} waiting while any region has unwritten chunks.
+     * Only one is queued at a time, counting the regions, and it never waits on the file IO thread.
+     * Once its count drops to zero it is done, the next region to be queued starts a new one, as the
+     * IO thread ignores an instance that is still in its queue.
+     */
+    private static class Barrier implements IThreadedFileIO
+    {
+        private static Barrier current;
+        private int regions = 0;
+
+        static synchronized Barrier acquire()
+        {
+            if (current == null)
+            {
+                current = new Barrier();
+                ThreadedFileIOBase.getThreadedIOInstance().queueIO(current);
+            }
+            current.regions++;
+            return current;
+        }
+
+        void release()
+        {
+            synchronized (Barrier.class)
+            {
+                if (--regions == 0 && current == this)
+                    current = null;
+            }
+        }
+
+        @Override
+        public boolean writeNextIO()
+        {
+            synchronized (Barrier.class)
+            {
+                return regions > 0;
+            }
+        }
+    }
+}
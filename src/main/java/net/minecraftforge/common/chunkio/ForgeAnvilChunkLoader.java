@@ -0,0 +1,140 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.chunkio;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.datafix.DataFixer;
+import net.minecraft.util.datafix.FixTypes;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import net.minecraftforge.common.ForgeModContainer;
+
+/**
+ * The chunk loader used for Anvil worlds, hands saved chunks to {@link ChunkSaveExecutor}
+ * when {@link ForgeModContainer#asyncChunkSaving} is enabled, and reads chunks through
+ * {@link MappedRegionFile} when {@link ForgeModContainer#mappedRegionReads} is enabled as well.
+ * Mapped reads need the async saving, as only ChunkSaveExecutor tells which chunks are being written.
+ */
+public class ForgeAnvilChunkLoader extends AnvilChunkLoader
+{
+    private final DataFixer fixer;
+
+    public ForgeAnvilChunkLoader(File chunkSaveLocation, DataFixer dataFixer)
+    {
+        super(chunkSaveLocation, dataFixer);
+        this.fixer = dataFixer;
+    }
+
+    @Override
+    protected void addChunkToPending(ChunkPos pos, NBTTagCompound compound)
+    {
+        if (ForgeModContainer.asyncChunkSaving)
+            ChunkSaveExecutor.queueChunkSave(this, pos, compound);
+        else
+            super.addChunkToPending(pos, compound);
+    }
+
+    @Override
+    @Nullable
+    public Object[] loadChunk__Async(World world, int x, int z) throws IOException
+    {
+        ChunkPos pos = new ChunkPos(x, z);
+        NBTTagCompound nbt = ChunkSaveExecutor.getPendingChunk(this, pos);
+        // Chunks with a pending or in-flight write were returned above
+        if (nbt == null && ForgeModContainer.mappedRegionReads && ForgeModContainer.asyncChunkSaving && !this.chunksToSave.containsKey(pos))
+        {
+            nbt = MappedRegionFile.readChunk(this.chunkSaveLocation, x, z);
+            if (nbt != null)
+                nbt = this.fixer.process(FixTypes.CHUNK, nbt);
+        }
+        if (nbt == null && ForgeModContainer.asyncChunkSaving && !this.chunksToSave.containsKey(pos))
+        {
+            DataInputStream in = readRegionChunk(x, z);
+            if (in == null)
+                return null;
+            nbt = this.fixer.process(FixTypes.CHUNK, CompressedStreamTools.read(in));
+        }
+        if (nbt != null)
+            return this.checkedReadChunkFromNBT__Async(world, x, z, nbt);
+        return super.loadChunk__Async(world, x, z);
+    }
+
+    @Override
+    public boolean isChunkGeneratedAt(int x, int z)
+    {
+        ChunkPos pos = new ChunkPos(x, z);
+        if (ChunkSaveExecutor.getPendingChunk(this, pos) != null)
+            return true;
+        if (ForgeModContainer.asyncChunkSaving && !this.chunksToSave.containsKey(pos))
+        {
+            RegionFile region = RegionFileCache.acquireRegionFile(this.chunkSaveLocation, x, z, false);
+            if (region == null)
+                return false;
+            try
+            {
+                return region.isChunkSaved(x & 31, z & 31);
+            }
+            finally
+            {
+                RegionFileCache.releaseRegionFile(this.chunkSaveLocation, x, z);
+            }
+        }
+        return super.isChunkGeneratedAt(x, z);
+    }
+
+    /**
+     * Reads the chunk from its region file, pinned so the chunk save threads can not close it meanwhile.
+     *
+     * @return The data of the chunk, or null if it was never saved
+     */
+    @Nullable
+    private DataInputStream readRegionChunk(int x, int z)
+    {
+        RegionFile region = RegionFileCache.acquireRegionFile(this.chunkSaveLocation, x, z, false);
+        if (region == null)
+            return null;
+        try
+        {
+            return region.getChunkDataInputStream(x & 31, z & 31);
+        }
+        finally
+        {
+            RegionFileCache.releaseRegionFile(this.chunkSaveLocation, x, z);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        super.flush();
+        ChunkSaveExecutor.flush(this);
+        MappedRegionFile.release(this.chunkSaveLocation);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.chunkio;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Maps;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraftforge.fml.common.FMLLog;
+
+/**
+ * Read only view of a region file mapped into memory, used when
+ * {@link net.minecraftforge.common.ForgeModContainer#mappedRegionReads} is enabled.
+ *
+ * Unlike {@link net.minecraft.world.chunk.storage.RegionFile} reads do not lock the region,
+ * so chunks of the same region can be read by several threads at once. The header is read
+ * from the mapping on every read, so chunks written through RegionFile since the file was
+ * mapped are picked up, as long as the file did not grow past the mapping, in which case the
+ * file is mapped again.
+ *
+ * Reads return null whenever the chunk can not be read from the mapping, in which case the
+ * caller should fall back to the regular RegionFile read. Callers must only read chunks without a
+ * pending or in-flight write, as the sectors of a chunk that is being written may be freed and
+ * reused by another chunk. A chunk that starts being written during the read is detected by the
+ * header entry changing or the data belonging to another chunk.
+ *
+ * Mappings are unmapped once they were released and no thread is reading from them. The cleaner of the
+ * buffer is looked up reflectively, if that is not possible on the running JVM they are unmapped once
+ * garbage collected.
+ */
+class MappedRegionFile
+{
+    private static final int SECTOR_BYTES = 4096;
+    private static final int MAX_POOLED_INFLATERS = 16;
+
+    private static final Map<File, MappedRegionFile> cache = Maps.newHashMap();
+    private static final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+    private static boolean unmapFailed = false;
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    // Guarded by the cache
+    private int readers = 0;
+    private boolean released = false;
+
+    private MappedRegionFile(MappedByteBuffer buffer)
+    {
+        this.buffer = buffer;
+        this.size = buffer.capacity();
+    }
+
+    /**
+     * @return The chunk data, or null if it could not be read from the mapped region file
+     */
+    @Nullable
+    static NBTTagCompound readChunk(File saveLocation, int x, int z)
+    {
+        File file = new File(new File(saveLocation, "region"), "r." + (x >> 5) + "." + (z >> 5) + ".mca");
+        MappedRegionFile region = null;
+        try
+        {
+            region = acquire(file);
+            return region == null ? null : region.read(x, z);
+        }
+        catch (Exception e)
+        {
+            FMLLog.log.debug("Unable to read chunk {}, {} from mapped region file {}, falling back", x, z, file, e);
+            return null;
+        }
+        finally
+        {
+            if (region != null)
+                region.releaseReader();
+        }
+    }
+
+    /**
+     * Drops the mappings of all region files in the save location, they are mapped again on the next read.
+     */
+    static void release(File saveLocation)
+    {
+        File dir = new File(saveLocation, "region");
+        synchronized (cache)
+        {
+            Iterator<Map.Entry<File, MappedRegionFile>> itr = cache.entrySet().iterator();
+            while (itr.hasNext())
+            {
+                Map.Entry<File, MappedRegionFile> next = itr.next();
+                if (dir.equals(next.getKey().getParentFile()))
+                {
+                    itr.remove();
+                    next.getValue().markReleased();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The mapping of the file, which has to be passed to {@link #releaseReader()} once read, or null if the file can not be mapped
+     */
+    @Nullable
+    private static MappedRegionFile acquire(File file) throws IOException
+    {
+        synchronized (cache)
+        {
+            long length = file.length();
+            MappedRegionFile region = cache.get(file);
+            if (region == null || region.size < length)
+            {
+                if (length < SECTOR_BYTES * 2 || length > Integer.MAX_VALUE)
+                    return null;
+
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+                {
+                    MappedRegionFile mapped = new MappedRegionFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+                    if (region != null)
+                        region.markReleased();
+                    region = mapped;
+                }
+                cache.put(file, region);
+            }
+            region.readers++;
+            return region;
+        }
+    }
+
+    private void releaseReader()
+    {
+        synchronized (cache)
+        {
+            readers--;
+            if (released && readers == 0)
+                unmap();
+        }
+    }
+
+    private void markReleased()
+    {
+        released = true;
+        if (readers == 0)
+            unmap();
+    }
+
+    // Only unmapped once no thread reads from it anymore, accessing an unmapped buffer crashes the JVM
+    private void unmap()
+    {
+        if (unmapFailed)
+            return;
+        try
+        {
+            try
+            {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            }
+            catch (NoSuchMethodException e)
+            {
+                // Java 8
+                Method getCleaner = buffer.getClass().getMethod("cleaner");
+                getCleaner.setAccessible(true);
+                Object cleaner = getCleaner.invoke(buffer);
+                if (cleaner != null)
+                {
+                    Method clean = cleaner.getClass().getMethod("clean");
+                    clean.setAccessible(true);
+                    clean.invoke(cleaner);
+                }
+            }
+        }
+        catch (Throwable t)
+        {
+            unmapFailed = true;
+            FMLLog.log.debug("Unable to unmap region files, they are unmapped once garbage collected", t);
+        }
+    }
+
+    @Nullable
+    private NBTTagCompound read(int chunkX, int chunkZ) throws IOException
+    {
+        int x = chunkX & 31;
+        int z = chunkZ & 31;
+        int offset = buffer.getInt((x + z * 32) * 4);
+        if (offset == 0)
+            return null;
+
+        int start = (offset >> 8) * SECTOR_BYTES;
+        int sectors = offset & 0xFF;
+        if (start < SECTOR_BYTES * 2 || start + 5 > size)
+            return null;
+
+        int length = buffer.getInt(start);
+        if (length <= 1 || length > sectors * SECTOR_BYTES || start + 4 + length > size)
+            return null;
+        if (buffer.get(start + 4) != 2) // Only deflate, GZip is not written since beta and read by the fallback
+            return null;
+
+        byte[] data = new byte[length - 1];
+        ByteBuffer view = buffer.duplicate();
+        view.position(start + 5);
+        view.get(data);
+
+        Inflater inflater = inflaters.poll();
+        if (inflater == null)
+            inflater = new Inflater();
+        try
+        {
+            InputStream in = new InflaterInputStream(new ByteArrayInputStream(data), inflater);
+            NBTTagCompound nbt = CompressedStreamTools.read(new DataInputStream(in));
+            // Read to the end so the checksum is verified, a chunk written concurrently fails here
+            byte[] skip = new byte[256];
+            while (in.read(skip) >= 0);
+
+            // The sectors were freed and reused while reading, never return the data of another chunk
+            if (buffer.getInt((x + z * 32) * 4) != offset)
+                return null;
+            NBTTagCompound level = nbt.getCompoundTag("Level");
+            if (level.getInteger("xPos") != chunkX || level.getInteger("zPos") != chunkZ)
+                return null;
+            return nbt;
+        }
+        finally
+        {
+            inflater.reset();
+            if (inflaters.size() < MAX_POOLED_INFLATERS)
+                inflaters.offer(inflater);
+            else
+                inflater.end();
+        }
+    }
+}
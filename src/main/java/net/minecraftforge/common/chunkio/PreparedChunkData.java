@@ -0,0 +1,191 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.chunkio;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.block.Block;
+import net.minecraft.entity.Entity;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.registry.EntityEntry;
+import net.minecraftforge.fml.common.registry.ForgeRegistries;
+
+/**
+ * The entities, tile entities and scheduled block ticks of a chunk, read from its NBT on the
+ * chunk I/O thread so that the server thread only has to construct them and add them to the world.
+ *
+ * Entries are validated and their registry lookups resolved in {@link #prepare(NBTTagCompound)},
+ * entities and tile entities are grouped by type. {@link #load(World, Chunk)} then does what
+ * {@link AnvilChunkLoader#loadEntities(World, NBTTagCompound, Chunk)} does with the raw NBT.
+ */
+class PreparedChunkData
+{
+    private final Map<EntityEntry, List<NBTTagCompound>> entities = new LinkedHashMap<EntityEntry, List<NBTTagCompound>>();
+    private final Map<String, List<NBTTagCompound>> tileEntities = new LinkedHashMap<String, List<NBTTagCompound>>();
+    private final List<ScheduledTick> ticks = new ArrayList<ScheduledTick>();
+    private int entityCount = 0;
+
+    private PreparedChunkData(){}
+
+    // async stuff
+    static PreparedChunkData prepare(NBTTagCompound level)
+    {
+        PreparedChunkData data = new PreparedChunkData();
+
+        NBTTagList entities = level.getTagList("Entities", 10);
+        for (int i = 0; i < entities.tagCount(); i++)
+        {
+            NBTTagCompound nbt = entities.getCompoundTagAt(i);
+            data.entityCount++;
+            ResourceLocation id = new ResourceLocation(nbt.getString("id"));
+            EntityEntry entry = ForgeRegistries.ENTITIES.getValue(id);
+            if (entry == null)
+            {
+                FMLLog.log.warn("Skipping Entity with id {}", id);
+                continue;
+            }
+            data.entities.computeIfAbsent(entry, k -> new ArrayList<NBTTagCompound>()).add(nbt);
+        }
+
+        NBTTagList tileEntities = level.getTagList("TileEntities", 10);
+        for (int i = 0; i < tileEntities.tagCount(); i++)
+        {
+            NBTTagCompound nbt = tileEntities.getCompoundTagAt(i);
+            data.tileEntities.computeIfAbsent(nbt.getString("id"), k -> new ArrayList<NBTTagCompound>()).add(nbt);
+        }
+
+        if (level.hasKey("TileTicks", 9))
+        {
+            NBTTagList ticks = level.getTagList("TileTicks", 10);
+            for (int i = 0; i < ticks.tagCount(); i++)
+            {
+                NBTTagCompound nbt = ticks.getCompoundTagAt(i);
+                Block block = nbt.hasKey("i", 8) ? Block.getBlockFromName(nbt.getString("i")) : Block.getBlockById(nbt.getInteger("i"));
+                BlockPos pos = new BlockPos(nbt.getInteger("x"), nbt.getInteger("y"), nbt.getInteger("z"));
+                data.ticks.add(new ScheduledTick(pos, block, nbt.getInteger("t"), nbt.getInteger("p")));
+            }
+        }
+
+        return data;
+    }
+
+    // sync stuff
+    void load(World world, Chunk chunk)
+    {
+        for (Map.Entry<EntityEntry, List<NBTTagCompound>> group : entities.entrySet())
+        {
+            for (NBTTagCompound nbt : group.getValue())
+            {
+                readEntity(group.getKey(), nbt, world, chunk);
+            }
+        }
+        if (entityCount > 0)
+        {
+            chunk.setHasEntities(true);
+        }
+
+        for (List<NBTTagCompound> group : tileEntities.values())
+        {
+            for (NBTTagCompound nbt : group)
+            {
+                TileEntity tileEntity = TileEntity.create(world, nbt);
+                if (tileEntity != null)
+                {
+                    chunk.addTileEntity(tileEntity);
+                }
+            }
+        }
+
+        for (ScheduledTick tick : ticks)
+        {
+            world.scheduleBlockUpdate(tick.pos, tick.block, tick.delay, tick.priority);
+        }
+    }
+
+    private static void readEntity(EntityEntry entry, NBTTagCompound nbt, World world, Chunk chunk)
+    {
+        Entity entity;
+        try
+        {
+            entity = entry.newInstance(world);
+        }
+        catch (RuntimeException e)
+        {
+            return;
+        }
+        if (entity == null)
+        {
+            return;
+        }
+
+        try
+        {
+            entity.readFromNBT(nbt);
+        }
+        catch (Exception e)
+        {
+            FMLLog.log.error("An Entity {}({}) has thrown an exception during loading, its state cannot be restored. Report this to the mod author",
+                    nbt.getString("id"), entity.getName(), e);
+            return;
+        }
+
+        chunk.addEntity(entity);
+
+        if (nbt.hasKey("Passengers", 9))
+        {
+            NBTTagList passengers = nbt.getTagList("Passengers", 10);
+            for (int i = 0; i < passengers.tagCount(); i++)
+            {
+                Entity passenger = AnvilChunkLoader.readChunkEntity(passengers.getCompoundTagAt(i), world, chunk);
+                if (passenger != null)
+                {
+                    passenger.startRiding(entity, true);
+                }
+            }
+        }
+    }
+
+    private static class ScheduledTick
+    {
+        private final BlockPos pos;
+        private final Block block;
+        private final int delay;
+        private final int priority;
+
+        private ScheduledTick(BlockPos pos, Block block, int delay, int priority)
+        {
+            this.pos = pos;
+            this.block = block;
+            this.delay = delay;
+            this.priority = priority;
+        }
+    }
+}
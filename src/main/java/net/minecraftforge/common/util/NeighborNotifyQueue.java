@@ -0,0 +1,92 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.common.util;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.block.Block;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.ForgeModContainer;
+
+/**
+ * Collects the neighbor notifications of a server world during a tick when
+ * {@link ForgeModContainer#deferNeighborNotifications} is enabled, so a position that
+ * notifies its neighbors several times in one tick only does so once, at the end of the tick.
+ *
+ * Positions are kept by {@link BlockPos#toLong()} in the order they were first notified.
+ * The block of the last notification of a position is used, and observers are updated if any of them asked for it.
+ */
+public final class NeighborNotifyQueue
+{
+    private final WorldServer world;
+    private final Long2ObjectLinkedOpenHashMap<Block> pending = new Long2ObjectLinkedOpenHashMap<>();
+    private final LongOpenHashSet updateObservers = new LongOpenHashSet();
+    private boolean flushing = false;
+
+    public NeighborNotifyQueue(WorldServer world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Queues the notification of the neighbors of a position, see {@link net.minecraft.world.World#notifyNeighborsOfStateChange(BlockPos, Block, boolean)}.
+     *
+     * @return False if the notification has to be done right away, because deferring is disabled or the queue is being flushed
+     */
+    public boolean offer(BlockPos pos, Block blockType, boolean observers)
+    {
+        if (!ForgeModContainer.deferNeighborNotifications || flushing)
+            return false;
+        long key = pos.toLong();
+        pending.put(key, blockType);
+        if (observers)
+            updateObservers.add(key);
+        return true;
+    }
+
+    /**
+     * Notifies the neighbors of every queued position. Notifications caused by these are done right away.
+     */
+    public void flush()
+    {
+        if (pending.isEmpty())
+            return;
+        flushing = true;
+        try
+        {
+            ObjectIterator<Long2ObjectMap.Entry<Block>> itr = pending.long2ObjectEntrySet().fastIterator();
+            while (itr.hasNext())
+            {
+                Long2ObjectMap.Entry<Block> entry = itr.next();
+                long key = entry.getLongKey();
+                world.notifyNeighborsOfStateChange(BlockPos.fromLong(key), entry.getValue(), updateObservers.contains(key));
+            }
+        }
+        finally
+        {
+            pending.clear();
+            updateObservers.clear();
+            flushing = false;
+        }
+    }
+}
@@ -19,12 +19,18 @@
 
 package net.minecraftforge.event;
 
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-import com.google.common.collect.Maps;
+import javax.annotation.Nullable;
 
 import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.common.capabilities.CapabilityDispatcher;
 import net.minecraftforge.common.capabilities.ICapabilityProvider;
 import net.minecraftforge.fml.common.eventhandler.GenericEvent;
 
@@ -34,12 +40,16 @@ import net.minecraftforge.fml.common.eventhandler.GenericEvent;
  *
  * Please note that as this is fired for ALL object creations efficient code is recommended.
  * And if possible use one of the sub-classes to filter your intended objects.
+ *
+ * Forge does not fire this event at all for types nobody listens to.
  */
 public class AttachCapabilitiesEvent<T> extends GenericEvent<T>
 {
     private final T obj;
-    private final Map<ResourceLocation, ICapabilityProvider> caps = Maps.newLinkedHashMap();
-    private final Map<ResourceLocation, ICapabilityProvider> view = Collections.unmodifiableMap(caps);
+    private ResourceLocation[] keys = new ResourceLocation[4];
+    private ICapabilityProvider[] caps = new ICapabilityProvider[4];
+    private int count = 0;
+    private Map<ResourceLocation, ICapabilityProvider> view;
 
     public AttachCapabilitiesEvent(Class<T> type, T obj)
     {
@@ -65,9 +75,18 @@ public class AttachCapabilitiesEvent<T> extends GenericEvent<T>
      */
     public void addCapability(ResourceLocation key, ICapabilityProvider cap)
     {
-        if (caps.containsKey(key))
-            throw new IllegalStateException("Duplicate Capability Key: " + key  + " " + cap);
-        this.caps.put(key, cap);
+        for (int x = 0; x < count; x++)
+        {
+            if (keys[x].equals(key))
+                throw new IllegalStateException("Duplicate Capability Key: " + key  + " " + cap);
+        }
+        if (count == keys.length)
+        {
+            keys = Arrays.copyOf(keys, count << 1);
+            caps = Arrays.copyOf(caps, count << 1);
+        }
+        keys[count] = key;
+        caps[count++] = cap;
     }
 
     /**
@@ -75,6 +94,71 @@ public class AttachCapabilitiesEvent<T> extends GenericEvent<T>
      */
     public Map<ResourceLocation, ICapabilityProvider> getCapabilities()
     {
+        if (view == null)
+            view = new CapabilityView();
         return view;
     }
+
+    /**
+     * Bakes the attached capabilities, in attachment order, straight into a dispatcher.
+     *
+     * @return The dispatcher, or null if nothing was attached and there is no parent
+     */
+    @Nullable
+    CapabilityDispatcher createDispatcher(@Nullable ICapabilityProvider parent)
+    {
+        return count > 0 || parent != null ? new CapabilityDispatcher(keys, caps, count, parent) : null;
+    }
+
+    /**
+     * Live view of the attached capabilities in attachment order, backed by the key and provider arrays.
+     */
+    private class CapabilityView extends AbstractMap<ResourceLocation, ICapabilityProvider>
+    {
+        private final Set<Entry<ResourceLocation, ICapabilityProvider>> entries = new AbstractSet<Entry<ResourceLocation, ICapabilityProvider>>()
+        {
+            @Override
+            public Iterator<Entry<ResourceLocation, ICapabilityProvider>> iterator()
+            {
+                return new Iterator<Entry<ResourceLocation, ICapabilityProvider>>()
+                {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return index < count;
+                    }
+
+                    @Override
+                    public Entry<ResourceLocation, ICapabilityProvider> next()
+                    {
+                        if (index >= count)
+                            throw new NoSuchElementException();
+                        Entry<ResourceLocation, ICapabilityProvider> ret = new SimpleImmutableEntry<>(keys[index], caps[index]);
+                        index++;
+                        return ret;
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return count;
+            }
+        };
+
+        @Override
+        public Set<Entry<ResourceLocation, ICapabilityProvider>> entrySet()
+        {
+            return entries;
+        }
+
+        @Override
+        public int size()
+        {
+            return count;
+        }
+    }
 }
@@ -133,6 +133,10 @@ import javax.annotation.Nullable;
 
 public class ForgeEventFactory
 {
+    /**
+     * Bit mask of all sides for {@link #onNeighborNotify(World, BlockPos, int, boolean)}
+     */
+    public static final int ALL_SIDES = (1 << EnumFacing.VALUES.length) - 1;
 
     public static MultiPlaceEvent onPlayerMultiBlockPlace(EntityPlayer player, List<BlockSnapshot> blockSnapshots, EnumFacing direction, EnumHand hand)
     {
@@ -158,6 +162,26 @@ public class ForgeEventFactory
         return event;
     }
 
+    /**
+     * Fires a {@link NeighborNotifyEvent} if anything listens for it, without looking up the block state or
+     * allocating the set of sides otherwise.
+     *
+     * @param notifiedSides The notified sides as a bit mask of {@link EnumFacing#ordinal()}, see {@link #ALL_SIDES}
+     * @return True if the event was canceled
+     */
+    public static boolean onNeighborNotify(World world, BlockPos pos, int notifiedSides, boolean forceRedstoneUpdate)
+    {
+        if (!MinecraftForge.EVENT_BUS.hasListeners(NeighborNotifyEvent.class))
+            return false;
+        EnumSet<EnumFacing> sides = EnumSet.noneOf(EnumFacing.class);
+        for (EnumFacing side : EnumFacing.VALUES)
+        {
+            if ((notifiedSides & (1 << side.ordinal())) != 0)
+                sides.add(side);
+        }
+        return onNeighborNotify(world, pos, world.getBlockState(pos), sides, forceRedstoneUpdate).isCanceled();
+    }
+
     public static boolean doPlayerHarvestCheck(EntityPlayer player, IBlockState state, boolean success)
     {
         PlayerEvent.HarvestCheck event = new PlayerEvent.HarvestCheck(player, state, success);
@@ -614,47 +638,56 @@ public class ForgeEventFactory
         return MinecraftForge.EVENT_BUS.post(new RenderBlockOverlayEvent(player, renderPartialTicks, type, block, pos));
     }
 
+    private static final ResourceLocation[] NO_CAPABILITY_KEYS = new ResourceLocation[0];
+    private static final ICapabilityProvider[] NO_CAPABILITIES = new ICapabilityProvider[0];
+
     @Nullable
     public static CapabilityDispatcher gatherCapabilities(TileEntity tileEntity)
     {
-        return gatherCapabilities(new AttachCapabilitiesEvent<TileEntity>(TileEntity.class, tileEntity), null);
+        return gatherCapabilities(TileEntity.class, tileEntity, null);
     }
 
     @Nullable
     public static CapabilityDispatcher gatherCapabilities(Entity entity)
     {
-        return gatherCapabilities(new AttachCapabilitiesEvent<Entity>(Entity.class, entity), null);
+        return gatherCapabilities(Entity.class, entity, null);
     }
 
     @Nullable
     public static CapabilityDispatcher gatherCapabilities(Village village)
     {
-        return gatherCapabilities(new AttachCapabilitiesEvent<Village>(Village.class, village), null);
+        return gatherCapabilities(Village.class, village, null);
     }
 
     @Nullable
     public static CapabilityDispatcher gatherCapabilities(ItemStack stack, ICapabilityProvider parent)
     {
-        return gatherCapabilities(new AttachCapabilitiesEvent<ItemStack>(ItemStack.class, stack), parent);
+        return gatherCapabilities(ItemStack.class, stack, parent);
     }
 
     @Nullable
     public static CapabilityDispatcher gatherCapabilities(World world, ICapabilityProvider parent)
     {
-        return gatherCapabilities(new AttachCapabilitiesEvent<World>(World.class, world), parent);
+        return gatherCapabilities(World.class, world, parent);
     }
 
     @Nullable
     public static CapabilityDispatcher gatherCapabilities(Chunk chunk)
     {
-        return gatherCapabilities(new AttachCapabilitiesEvent<Chunk>(Chunk.class, chunk), null);
+        return gatherCapabilities(Chunk.class, chunk, null);
     }
 
     @Nullable
-    private static CapabilityDispatcher gatherCapabilities(AttachCapabilitiesEvent<?> event, @Nullable ICapabilityProvider parent)
+    private static <T> CapabilityDispatcher gatherCapabilities(Class<T> type, T provider, @Nullable ICapabilityProvider parent)
     {
+        // Most objects never get a capability attached, don't build the event unless someone listens for this type
+        if (!MinecraftForge.EVENT_BUS.hasListeners(AttachCapabilitiesEvent.class, type))
+        {
+            return parent != null ? new CapabilityDispatcher(NO_CAPABILITY_KEYS, NO_CAPABILITIES, 0, parent) : null;
+        }
+        AttachCapabilitiesEvent<T> event = new AttachCapabilitiesEvent<T>(type, provider);
         MinecraftForge.EVENT_BUS.post(event);
-        return event.getCapabilities().size() > 0 || parent != null ? new CapabilityDispatcher(event.getCapabilities(), parent) : null;
+        return event.createDispatcher(parent);
     }
 
     public static boolean fireSleepingLocationCheck(EntityPlayer player, BlockPos sleepingLocation)
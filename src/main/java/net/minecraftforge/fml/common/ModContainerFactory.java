@@ -68,22 +68,34 @@ public class ModContainerFactory
         {
             if (modTypes.containsKey(ann.getASMType()))
             {
-                FMLLog.log.debug("Identified a mod of type {} ({}) - loading", ann.getASMType(), className);
-                try {
-                    ModContainer ret = modTypes.get(ann.getASMType()).newInstance(className, container, ann.getValues());
-                    if (!ret.shouldLoadInEnvironment())
-                    {
-                        FMLLog.log.debug("Skipping mod {}, container opted to not load.", className);
-                        return null;
-                    }
-                    return ret;
-                } catch (Exception e) {
-                    FMLLog.log.error("Unable to construct {} container", ann.getASMType().getClassName(), e);
-                    return null;
-                }
+                return build(className, ann.getASMType(), ann.getValues(), container);
             }
         }
 
         return null;
     }
+
+    /**
+     * Builds the container for a class annotated with a registered mod type annotation,
+     * used when the class has not been parsed, for example when its data comes from a cache.
+     *
+     * @return The container, or null if it opted to not load or could not be constructed
+     */
+    @Nullable
+    public ModContainer build(String className, Type annotationType, Map<String, Object> values, ModCandidate container)
+    {
+        FMLLog.log.debug("Identified a mod of type {} ({}) - loading", annotationType, className);
+        try {
+            ModContainer ret = modTypes.get(annotationType).newInstance(className, container, values);
+            if (!ret.shouldLoadInEnvironment())
+            {
+                FMLLog.log.debug("Skipping mod {}, container opted to not load.", className);
+                return null;
+            }
+            return ret;
+        } catch (Exception e) {
+            FMLLog.log.error("Unable to construct {} container", annotationType.getClassName(), e);
+            return null;
+        }
+    }
 }
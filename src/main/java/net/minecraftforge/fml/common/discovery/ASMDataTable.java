@@ -139,6 +139,16 @@ public class ASMDataTable
         this.containers.add(container);
     }
 
+    /**
+     * Adds everything found while exploring into another table to this table.
+     */
+    void addAll(ASMDataTable other)
+    {
+        this.globalAnnotationData.putAll(other.globalAnnotationData);
+        this.containers.addAll(other.containers);
+        this.packageMap.putAll(other.packageMap);
+    }
+
     public void registerPackage(ModCandidate modCandidate, String pkg)
     {
         this.packageMap.put(pkg,modCandidate);
@@ -0,0 +1,389 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.MetadataCollection;
+import net.minecraftforge.fml.common.ModContainer;
+import net.minecraftforge.fml.common.ModContainerFactory;
+import net.minecraftforge.fml.common.discovery.ASMDataTable.ASMData;
+import net.minecraftforge.fml.common.discovery.asm.ModAnnotation.EnumHolder;
+import net.minecraftforge.fml.relauncher.FMLInjectionData;
+
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Primitives;
+
+/**
+ * Persistent cache of the annotation data found in mod jars, so unchanged jars do not need to have
+ * every class parsed again on the next start.
+ *
+ * Entries are named by a hash of the jar contents and also record the jar size and modification time,
+ * all three must match for an entry to be used, so a replaced jar is always scanned again.
+ * Entries not used for {@link #MAX_AGE_DAYS} days are removed.
+ *
+ * Enabled with -Dfml.annotationCache=true.
+ */
+class AnnotationCache
+{
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.annotationCache", "false"));
+    private static final int VERSION = 1;
+    private static final long MAX_AGE_DAYS = 30;
+    private static final File ROOT = new File((File) FMLInjectionData.data()[6], "annotationcache");
+
+    /**
+     * Everything a scan of a single class file contributes.
+     */
+    static class ClassEntry
+    {
+        private final String entryName;
+        private final int classVersion;
+        private final int containerIndex;
+        private final List<ASMData> data;
+
+        /**
+         * @param entryName The name of the class file in the jar
+         * @param classVersion The class file version
+         * @param containerIndex The index in data of the annotation that makes this class a mod, or -1
+         * @param data The annotation and interface data of the class, in the order it is added to the table
+         */
+        ClassEntry(String entryName, int classVersion, int containerIndex, List<ASMData> data)
+        {
+            this.entryName = entryName;
+            this.classVersion = classVersion;
+            this.containerIndex = containerIndex;
+            this.data = data;
+        }
+    }
+
+    private final File jar;
+    private final long size;
+    private final long modified;
+    private final HashCode hash;
+    private final List<ClassEntry> entries = Lists.newArrayList();
+
+    AnnotationCache(File jar) throws IOException
+    {
+        this.jar = jar;
+        this.size = jar.length();
+        this.modified = jar.lastModified();
+        this.hash = com.google.common.io.Files.asByteSource(jar).hash(Hashing.murmur3_128());
+    }
+
+    void add(ClassEntry entry)
+    {
+        entries.add(entry);
+    }
+
+    private File getFile()
+    {
+        return new File(ROOT, hash + ".bin");
+    }
+
+    /**
+     * Replays the cached data for the jar into the table, exactly as a scan would have added it.
+     *
+     * @return False if there is no valid cache entry for the jar, in which case nothing was added
+     */
+    boolean load(ModCandidate candidate, ASMDataTable table, List<ModContainer> foundMods, MetadataCollection mc)
+    {
+        File file = getFile();
+        if (!file.isFile())
+            return false;
+
+        List<ClassEntry> cached = Lists.newArrayList();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath())))))
+        {
+            if (in.readInt() != VERSION || in.readLong() != size || in.readLong() != modified)
+                return false;
+
+            int classes = in.readInt();
+            for (int x = 0; x < classes; x++)
+            {
+                String entryName = readString(in);
+                int classVersion = in.readInt();
+                int containerIndex = in.readInt();
+                int count = in.readInt();
+                List<ASMData> data = Lists.newArrayListWithCapacity(count);
+                for (int y = 0; y < count; y++)
+                {
+                    String annotation = readString(in);
+                    String className = readString(in);
+                    String objectName = in.readBoolean() ? readString(in) : null;
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> info = (Map<String, Object>)readValue(in);
+                    data.add(new ASMData(candidate, annotation, className, objectName, info));
+                }
+                cached.add(new ClassEntry(entryName, classVersion, containerIndex, data));
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            FMLLog.log.warn("Failed to read the annotation cache {} for {}, it will be scanned", file, jar.getName(), e);
+            file.delete();
+            return false;
+        }
+
+        for (ClassEntry entry : cached)
+        {
+            candidate.addClassEntry(entry.entryName);
+            for (ASMData data : entry.data)
+            {
+                table.addASMData(candidate, data.getAnnotationName(), data.getClassName(), data.getObjectName(), data.getAnnotationInfo());
+            }
+            if (entry.containerIndex >= 0)
+            {
+                ASMData mod = entry.data.get(entry.containerIndex);
+                Type type = Type.getObjectType(mod.getAnnotationName().replace('.', '/'));
+                ModContainer container = ModContainerFactory.modTypes.containsKey(type) ? ModContainerFactory.instance().build(mod.getClassName(), type, mod.getAnnotationInfo(), candidate) : null;
+                if (container != null)
+                {
+                    table.addContainer(container);
+                    foundMods.add(container);
+                    container.bindMetadata(mc);
+                    container.setClassVersion(entry.classVersion);
+                }
+            }
+        }
+        file.setLastModified(System.currentTimeMillis());
+        FMLLog.log.debug("Loaded annotation data for {} classes in {} from the cache", cached.size(), jar.getName());
+        return true;
+    }
+
+    void save()
+    {
+        File file = getFile();
+        try
+        {
+            ROOT.mkdirs();
+            File tmp = File.createTempFile(hash.toString(), ".tmp", ROOT);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp.toPath())))))
+            {
+                out.writeInt(VERSION);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeInt(entries.size());
+                for (ClassEntry entry : entries)
+                {
+                    writeString(out, entry.entryName);
+                    out.writeInt(entry.classVersion);
+                    out.writeInt(entry.containerIndex);
+                    out.writeInt(entry.data.size());
+                    for (ASMData data : entry.data)
+                    {
+                        writeString(out, data.getAnnotationName());
+                        writeString(out, data.getClassName());
+                        out.writeBoolean(data.getObjectName() != null);
+                        if (data.getObjectName() != null)
+                            writeString(out, data.getObjectName());
+                        writeValue(out, data.getAnnotationInfo());
+                    }
+                }
+            }
+            catch (IOException | RuntimeException e)
+            {
+                tmp.delete();
+                throw e;
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            FMLLog.log.warn("Failed to write the annotation cache for {}", jar.getName(), e);
+            return;
+        }
+
+        long expired = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS);
+        File[] old = ROOT.listFiles((dir, name) -> name.endsWith(".bin"));
+        if (old != null)
+        {
+            for (File f : old)
+            {
+                if (f.lastModified() < expired)
+                    f.delete();
+            }
+        }
+    }
+
+    private static final int NULL = 0, STRING = 1, INT = 2, LONG = 3, BOOLEAN = 4, BYTE = 5, CHAR = 6, SHORT = 7,
+            FLOAT = 8, DOUBLE = 9, TYPE = 10, ENUM = 11, LIST = 12, MAP = 13, ARRAY = 14;
+    private static final Class<?>[] ARRAY_TYPES = { null, null, int.class, long.class, boolean.class, byte.class, char.class, short.class, float.class, double.class };
+
+    // Annotation values are boxed primitives, Strings, Types, enum constants, lists, nested annotation maps or primitive arrays
+    static void writeValue(DataOutputStream out, @Nullable Object value) throws IOException
+    {
+        if (value == null) { out.writeByte(NULL); }
+        else if (value instanceof String) { out.writeByte(STRING); writeString(out, (String)value); }
+        else if (value instanceof Integer) { out.writeByte(INT); out.writeInt((Integer)value); }
+        else if (value instanceof Long) { out.writeByte(LONG); out.writeLong((Long)value); }
+        else if (value instanceof Boolean) { out.writeByte(BOOLEAN); out.writeBoolean((Boolean)value); }
+        else if (value instanceof Byte) { out.writeByte(BYTE); out.writeByte((Byte)value); }
+        else if (value instanceof Character) { out.writeByte(CHAR); out.writeChar((Character)value); }
+        else if (value instanceof Short) { out.writeByte(SHORT); out.writeShort((Short)value); }
+        else if (value instanceof Float) { out.writeByte(FLOAT); out.writeFloat((Float)value); }
+        else if (value instanceof Double) { out.writeByte(DOUBLE); out.writeDouble((Double)value); }
+        else if (value instanceof Type) { out.writeByte(TYPE); writeString(out, ((Type)value).getDescriptor()); }
+        else if (value instanceof EnumHolder)
+        {
+            out.writeByte(ENUM);
+            writeString(out, ((EnumHolder)value).getDesc());
+            writeString(out, ((EnumHolder)value).getValue());
+        }
+        else if (value instanceof List)
+        {
+            List<?> list = (List<?>)value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object o : list)
+                writeValue(out, o);
+        }
+        else if (value instanceof Map)
+        {
+            Map<?, ?> map = (Map<?, ?>)value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet())
+            {
+                writeString(out, (String)e.getKey());
+                writeValue(out, e.getValue());
+            }
+        }
+        else if (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive())
+        {
+            int length = Array.getLength(value);
+            out.writeByte(ARRAY);
+            out.writeInt(length);
+            if (length == 0)
+            {
+                // The element tag is taken from the component type, no elements to infer it from
+                for (int x = INT; x < ARRAY_TYPES.length; x++)
+                {
+                    if (ARRAY_TYPES[x] == value.getClass().getComponentType())
+                        out.writeByte(x);
+                }
+                return;
+            }
+            for (int x = 0; x < length; x++)
+                writeValue(out, Array.get(value, x)); // Boxed and tagged, the reader takes the array type from the first one
+        }
+        else
+        {
+            throw new IOException("Unsupported annotation value " + value.getClass().getName());
+        }
+    }
+
+    @Nullable
+    static Object readValue(DataInputStream in) throws IOException
+    {
+        int tag = in.readByte();
+        switch (tag)
+        {
+            case NULL: return null;
+            case STRING: return readString(in);
+            case INT: return in.readInt();
+            case LONG: return in.readLong();
+            case BOOLEAN: return in.readBoolean();
+            case BYTE: return in.readByte();
+            case CHAR: return in.readChar();
+            case SHORT: return in.readShort();
+            case FLOAT: return in.readFloat();
+            case DOUBLE: return in.readDouble();
+            case TYPE: return Type.getType(readString(in));
+            case ENUM: return new EnumHolder(readString(in), readString(in));
+            case LIST:
+            {
+                int length = in.readInt();
+                List<Object> list = Lists.newArrayListWithCapacity(length);
+                for (int x = 0; x < length; x++)
+                    list.add(readValue(in));
+                return list;
+            }
+            case MAP:
+            {
+                int length = in.readInt();
+                Map<String, Object> map = Maps.newHashMapWithExpectedSize(length);
+                for (int x = 0; x < length; x++)
+                    map.put(readString(in), readValue(in));
+                return map;
+            }
+            case ARRAY:
+            {
+                int length = in.readInt();
+                if (length == 0)
+                    return Array.newInstance(ARRAY_TYPES[in.readByte()], 0);
+                Object first = readValue(in);
+                Object array = Array.newInstance(ARRAY_TYPES[tagOf(first)], length);
+                Array.set(array, 0, first);
+                for (int x = 1; x < length; x++)
+                    Array.set(array, x, readValue(in));
+                return array;
+            }
+            default:
+                throw new IOException("Unknown annotation value tag " + tag);
+        }
+    }
+
+    private static int tagOf(Object boxed) throws IOException
+    {
+        for (int x = INT; x < ARRAY_TYPES.length; x++)
+        {
+            if (Primitives.wrap(ARRAY_TYPES[x]) == boxed.getClass())
+                return x;
+        }
+        throw new IOException("Unsupported array element " + boxed.getClass().getName());
+    }
+
+    // DataOutput.writeUTF is limited to 64k, annotation strings are not
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -51,7 +51,8 @@ public class DirectoryDiscoverer implements ITypeDiscoverer
         }
     }
 
-    private ASMDataTable table;
+    // Only used by the deprecated exploreFileSystem overload, the discovery itself passes the table down
+    private volatile ASMDataTable table;
 
     @Override
     public List<ModContainer> discover(ModCandidate candidate, ASMDataTable table)
@@ -59,7 +60,7 @@ public class DirectoryDiscoverer implements ITypeDiscoverer
         this.table = table;
         List<ModContainer> found = Lists.newArrayList();
         FMLLog.log.debug("Examining directory {} for potential mods", candidate.getModContainer().getName());
-        exploreFileSystem("", candidate.getModContainer(), found, candidate, null);
+        exploreFileSystem("", candidate.getModContainer(), found, candidate, null, table);
         for (ModContainer mc : found)
         {
             table.addContainer(mc);
@@ -67,7 +68,18 @@ public class DirectoryDiscoverer implements ITypeDiscoverer
         return found;
     }
 
+    /**
+     * @deprecated The discoverer is shared by all directory candidates, use the overload taking the table to fill.
+     * This one fills the table of the last {@link #discover(ModCandidate, ASMDataTable)} call.
+     */
+    @Deprecated
     public void exploreFileSystem(String path, File modDir, List<ModContainer> harvestedMods, ModCandidate candidate, @Nullable MetadataCollection mc)
+    {
+        exploreFileSystem(path, modDir, harvestedMods, candidate, mc, table);
+    }
+
+    // The discoverer is shared by all directory candidates, which may be explored in parallel, so the table is passed down instead of kept in a field
+    public void exploreFileSystem(String path, File modDir, List<ModContainer> harvestedMods, ModCandidate candidate, @Nullable MetadataCollection mc, ASMDataTable table)
     {
         if (path.length() == 0)
         {
@@ -101,7 +113,7 @@ public class DirectoryDiscoverer implements ITypeDiscoverer
             if (file.isDirectory())
             {
                 FMLLog.log.trace("Recursing into package {}", path + file.getName());
-                exploreFileSystem(path + file.getName() + "/", file, harvestedMods, candidate, mc);
+                exploreFileSystem(path + file.getName() + "/", file, harvestedMods, candidate, mc, table);
                 continue;
             }
             Matcher match = classFile.matcher(file.getName());
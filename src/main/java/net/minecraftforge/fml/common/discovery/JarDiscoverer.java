@@ -34,11 +34,14 @@ import net.minecraftforge.fml.common.ModContainer;
 import net.minecraftforge.fml.common.ModContainerFactory;
 import net.minecraftforge.fml.common.discovery.ASMDataTable.ASMData;
 import net.minecraftforge.fml.common.discovery.asm.ASMModParser;
+import net.minecraftforge.fml.common.discovery.asm.ModAnnotation;
 import net.minecraftforge.fml.common.discovery.json.JsonAnnotationLoader;
 
 import java.util.regex.Matcher;
 import java.util.zip.ZipEntry;
 
+import javax.annotation.Nullable;
+
 import org.objectweb.asm.Type;
 
 import com.google.common.collect.Lists;
@@ -73,8 +76,17 @@ public class JarDiscoverer implements ITypeDiscoverer
 
             if (ENABLE_JSON_TEST && jar.getEntry(JsonAnnotationLoader.ANNOTATION_JSON) != null)
                 findClassesJSON(candidate, table, jar, foundMods, mc);
+            else if (AnnotationCache.ENABLED)
+            {
+                AnnotationCache cache = new AnnotationCache(candidate.getModContainer());
+                if (!cache.load(candidate, table, foundMods, mc))
+                {
+                    findClassesASM(candidate, table, jar, foundMods, mc, cache);
+                    cache.save();
+                }
+            }
             else
-                findClassesASM(candidate, table, jar, foundMods, mc);
+                findClassesASM(candidate, table, jar, foundMods, mc, null);
         }
         catch (Exception e)
         {
@@ -83,7 +95,7 @@ public class JarDiscoverer implements ITypeDiscoverer
         return foundMods;
     }
 
-    private void findClassesASM(ModCandidate candidate, ASMDataTable table, JarFile jar, List<ModContainer> foundMods, MetadataCollection mc) throws IOException
+    private void findClassesASM(ModCandidate candidate, ASMDataTable table, JarFile jar, List<ModContainer> foundMods, MetadataCollection mc, @Nullable AnnotationCache cache) throws IOException
     {
         for (ZipEntry ze : Collections.list(jar.entries()))
         {
@@ -111,6 +123,10 @@ public class JarDiscoverer implements ITypeDiscoverer
                 }
                 modParser.validate();
                 modParser.sendToTable(table, candidate);
+                if (cache != null)
+                {
+                    cache.add(toCacheEntry(ze.getName(), modParser, candidate));
+                }
                 ModContainer container = ModContainerFactory.instance().build(modParser, candidate.getModContainer(), candidate);
                 if (container!=null)
                 {
@@ -123,6 +139,23 @@ public class JarDiscoverer implements ITypeDiscoverer
         }
     }
 
+    private static AnnotationCache.ClassEntry toCacheEntry(String entryName, ASMModParser modParser, ModCandidate candidate)
+    {
+        List<ASMData> data = Lists.newArrayList();
+        int containerIndex = -1;
+        for (ModAnnotation ma : modParser.getAnnotations())
+        {
+            if (containerIndex == -1 && ModContainerFactory.modTypes.containsKey(ma.getASMType()))
+                containerIndex = data.size();
+            data.add(new ASMData(candidate, ma.getASMType().getClassName(), modParser.getASMType().getClassName(), ma.getMember(), ma.getValues()));
+        }
+        for (String intf : modParser.getInterfaces())
+        {
+            data.add(new ASMData(candidate, intf, modParser.getASMType().getInternalName(), null, null));
+        }
+        return new AnnotationCache.ClassEntry(entryName, modParser.getClassVersion(), containerIndex, data);
+    }
+
     private void findClassesJSON(ModCandidate candidate, ASMDataTable table, JarFile jar, List<ModContainer> foundMods, MetadataCollection mc) throws IOException
     {
         FMLLog.log.info("Loading jar {} annotation data from json", candidate.getModContainer().getPath());
@@ -21,6 +21,9 @@ package net.minecraftforge.fml.common.discovery;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,6 +41,7 @@ import com.google.common.collect.ObjectArrays;
 public class ModDiscoverer
 {
     private static Pattern zipJar = Pattern.compile("(.+).(zip|jar)$");
+    private static final boolean PARALLEL_DISCOVERY = Boolean.parseBoolean(System.getProperty("fml.parallelModDiscovery", "false"));
 
     private List<ModCandidate> candidates = Lists.newArrayList();
 
@@ -131,12 +135,24 @@ public class ModDiscoverer
     public List<ModContainer> identifyMods()
     {
         List<ModContainer> modList = Lists.newArrayList();
+        List<ForkJoinTask<ASMDataTable>> tasks = PARALLEL_DISCOVERY && candidates.size() > 1 ? exploreInParallel() : null;
 
-        for (ModCandidate candidate : candidates)
+        for (int x = 0; x < candidates.size(); x++)
         {
+            ModCandidate candidate = candidates.get(x);
             try
             {
-                List<ModContainer> mods = candidate.explore(dataTable);
+                List<ModContainer> mods;
+                if (tasks == null)
+                {
+                    mods = candidate.explore(dataTable);
+                }
+                else
+                {
+                    // Merged in candidate order, so the table and mod list are the same as with a sequential scan
+                    dataTable.addAll(tasks.get(x).join());
+                    mods = candidate.getContainedMods();
+                }
                 if (mods.isEmpty() && !candidate.isClasspath())
                 {
                     nonModLibs.add(candidate.getModContainer());
@@ -155,6 +171,43 @@ public class ModDiscoverer
         return modList;
     }
 
+    /**
+     * Explores every candidate on its own fork join pool thread, each into a private table
+     * that is merged back in order by {@link #identifyMods()}.
+     */
+    private List<ForkJoinTask<ASMDataTable>> exploreInParallel()
+    {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), candidates.size()));
+        ForkJoinPool pool = new ForkJoinPool(threads, p ->
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("FML Mod Discovery-" + thread.getPoolIndex());
+            thread.setContextClassLoader(loader);
+            return thread;
+        }, null, false);
+
+        try
+        {
+            List<ForkJoinTask<ASMDataTable>> tasks = Lists.newArrayListWithCapacity(candidates.size());
+            for (ModCandidate candidate : candidates)
+            {
+                tasks.add(pool.submit(() ->
+                {
+                    ASMDataTable table = new ASMDataTable();
+                    candidate.explore(table);
+                    return table;
+                }));
+            }
+            FMLLog.log.debug("Exploring {} mod candidates on {} threads", candidates.size(), threads);
+            return tasks;
+        }
+        finally
+        {
+            pool.shutdown(); // Already submitted tasks still run
+        }
+    }
+
     public ASMDataTable getASMTable()
     {
         return dataTable;
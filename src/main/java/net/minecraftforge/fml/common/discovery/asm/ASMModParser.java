@@ -55,7 +55,8 @@ public class ASMModParser
         try
         {
             ClassReader reader = new ClassReader(stream);
-            reader.accept(new ModClassVisitor(this), 0);
+            // Only the class header and annotations are needed, don't visit method bodies
+            reader.accept(new ModClassVisitor(this), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
         }
         catch (Exception ex)
         {
@@ -126,6 +127,11 @@ public class ASMModParser
 
     }
 
+    public Set<String> getInterfaces()
+    {
+        return interfaces;
+    }
+
     public void sendToTable(ASMDataTable table, ModCandidate candidate)
     {
         for (ModAnnotation ma : annotations)
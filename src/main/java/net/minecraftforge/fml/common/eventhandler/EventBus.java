@@ -22,8 +22,10 @@ package net.minecraftforge.fml.common.eventhandler;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -38,12 +40,17 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
+import org.apache.commons.lang3.tuple.Pair;
 
 public class EventBus implements IEventExceptionHandler
 {
+    private static final boolean LAMBDA_HANDLERS = Boolean.parseBoolean(System.getProperty("fml.lambdaEventHandlers", "false"));
     private static int maxID = 0;
+    private static final Map<Class<?>, Optional<ListenerList>> eventListenerLists = new ConcurrentHashMap<>();
+    private final Map<IEventListener, java.lang.reflect.Type> genericFilters = new MapMaker().weakKeys().makeMap();
+    private final Map<Class<?>, Map<java.lang.reflect.Type, GenericPresence>> genericPresence = new ConcurrentHashMap<>();
 
-    private ConcurrentHashMap<Object, ArrayList<IEventListener>> listeners = new ConcurrentHashMap<Object, ArrayList<IEventListener>>();
+    private ConcurrentHashMap<Object, ArrayList<Pair<ListenerList, IEventListener>>> listeners = new ConcurrentHashMap<Object, ArrayList<Pair<ListenerList, IEventListener>>>();
     private Map<Object,ModContainer> listenerOwners = new MapMaker().weakKeys().weakValues().makeMap();
     private final int busID = maxID++;
     private IEventExceptionHandler exceptionHandler;
@@ -127,7 +134,13 @@ public class EventBus implements IEventExceptionHandler
             Constructor<?> ctr = eventType.getConstructor();
             ctr.setAccessible(true);
             Event event = (Event)ctr.newInstance();
-            final ASMEventHandler asm = new ASMEventHandler(target, method, owner, IGenericEvent.class.isAssignableFrom(eventType));
+            boolean isGeneric = IGenericEvent.class.isAssignableFrom(eventType);
+            final IEventListener asm;
+            if (LAMBDA_HANDLERS)
+                asm = LambdaEventHandler.create(target, method, owner, event.isCancelable(), isGeneric);
+            else
+                asm = new ASMEventHandler(target, method, owner, isGeneric);
+            EventPriority priority = method.getAnnotation(SubscribeEvent.class).priority();
 
             IEventListener listener = asm;
             if (IContextSetter.class.isAssignableFrom(eventType))
@@ -145,11 +158,25 @@ public class EventBus implements IEventExceptionHandler
                     }
                 };
             }
+            if (EventProfiler.ENABLED)
+            {
+                listener = EventProfiler.wrap(listener, asm.toString(), owner, eventType);
+            }
+
+            if (isGeneric)
+            {
+                java.lang.reflect.Type type = method.getGenericParameterTypes()[0];
+                if (type instanceof ParameterizedType)
+                {
+                    genericFilters.put(listener, ((ParameterizedType)type).getActualTypeArguments()[0]);
+                }
+            }
 
-            event.getListenerList().register(busID, asm.getPriority(), listener);
+            ListenerList listenerList = event.getListenerList();
+            listenerList.register(busID, priority, listener);
 
-            ArrayList<IEventListener> others = listeners.computeIfAbsent(target, k -> new ArrayList<>());
-            others.add(listener);
+            ArrayList<Pair<ListenerList, IEventListener>> others = listeners.computeIfAbsent(target, k -> new ArrayList<>());
+            others.add(Pair.of(listenerList, listener));
         }
         catch (Exception e)
         {
@@ -159,12 +186,103 @@ public class EventBus implements IEventExceptionHandler
 
     public void unregister(Object object)
     {
-        ArrayList<IEventListener> list = listeners.remove(object);
+        ArrayList<Pair<ListenerList, IEventListener>> list = listeners.remove(object);
         if(list == null)
             return;
-        for (IEventListener listener : list)
+        for (Pair<ListenerList, IEventListener> listener : list)
+        {
+            listener.getLeft().unregister(busID, listener.getRight());
+            genericFilters.remove(listener.getRight());
+            if (EventProfiler.ENABLED)
+                EventProfiler.remove(listener.getRight());
+        }
+    }
+
+    /**
+     * Checks if posting an event of the specified type to this bus would reach any listener,
+     * including listeners registered for any of its super classes.
+     *
+     * This allows hooks that fire very frequently to skip constructing the event entirely
+     * when nobody is listening. The underlying listener array is cached by the event's
+     * {@link ListenerList} and rebuilt whenever a listener is registered or unregistered.
+     *
+     * If the listener list for the type can not be resolved, this conservatively returns true.
+     *
+     * @param eventType The exact type of the event that would be posted
+     * @return False if posting the event would not invoke any listener
+     */
+    public boolean hasListeners(Class<? extends Event> eventType)
+    {
+        Optional<ListenerList> list = eventListenerLists.computeIfAbsent(eventType, EventBus::resolveListenerList);
+        return !list.isPresent() || list.get().getListeners(busID).length > 0;
+    }
+
+    /**
+     * Generic aware version of {@link #hasListeners(Class)}, checks if posting a {@link IGenericEvent} of the
+     * specified type with the specified generic type would reach any listener. Listeners registered for another
+     * generic type are not counted, as they would never be invoked.
+     *
+     * The answer is cached per generic type until the listeners of the event change.
+     *
+     * @param eventType The exact type of the event that would be posted
+     * @param genericType The generic type the event would report
+     * @return False if posting the event would not invoke any listener
+     */
+    public boolean hasListeners(Class<? extends Event> eventType, java.lang.reflect.Type genericType)
+    {
+        Optional<ListenerList> list = eventListenerLists.computeIfAbsent(eventType, EventBus::resolveListenerList);
+        if (!list.isPresent())
+            return true;
+        IEventListener[] listeners = list.get().getListeners(busID);
+        if (listeners.length == 0)
+            return false;
+
+        Map<java.lang.reflect.Type, GenericPresence> cache = genericPresence.computeIfAbsent(eventType, k -> new ConcurrentHashMap<>());
+        GenericPresence presence = cache.get(genericType);
+        if (presence == null || presence.listeners != listeners)
+        {
+            boolean found = false;
+            for (IEventListener listener : listeners)
+            {
+                if (listener instanceof EventPriority)
+                    continue;
+                java.lang.reflect.Type filter = genericFilters.get(listener);
+                if (filter == null || filter == genericType)
+                {
+                    found = true;
+                    break;
+                }
+            }
+            presence = new GenericPresence(listeners, found);
+            cache.put(genericType, presence);
+        }
+        return presence.found;
+    }
+
+    private static final class GenericPresence
+    {
+        private final IEventListener[] listeners;
+        private final boolean found;
+
+        private GenericPresence(IEventListener[] listeners, boolean found)
+        {
+            this.listeners = listeners;
+            this.found = found;
+        }
+    }
+
+    private static Optional<ListenerList> resolveListenerList(Class<?> eventType)
+    {
+        try
+        {
+            Constructor<?> ctr = eventType.getConstructor();
+            ctr.setAccessible(true);
+            return Optional.of(((Event)ctr.newInstance()).getListenerList());
+        }
+        catch (Exception e)
         {
-            ListenerList.unregisterAll(busID, listener);
+            FMLLog.log.debug("Unable to resolve the listener list for event {}, assuming it has listeners", eventType, e);
+            return Optional.empty();
         }
     }
 
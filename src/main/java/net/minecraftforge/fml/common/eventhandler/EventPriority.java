@@ -24,7 +24,7 @@ public enum EventPriority implements IEventListener
     /*Priority of event listeners, listeners will be sorted with respect to this priority level.
      *
      * Note:
-     *   Due to using a ArrayList in the ListenerList,
+     *   Due to using an array per priority in the ListenerList,
      *   these need to stay in a contiguous index starting at 0. {Default ordinal}
      */
     HIGHEST, //First to execute
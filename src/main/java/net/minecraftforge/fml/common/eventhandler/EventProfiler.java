@@ -0,0 +1,248 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.eventhandler;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.fml.common.ModContainer;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Records how long each event listener takes, and how much it allocates, when enabled
+ * with the {@code fml.profileEventListeners} system property.
+ *
+ * Listeners are wrapped when they are registered, so with profiling disabled nothing
+ * is added to the dispatch path. The results are read out with {@code /forge track events}.
+ *
+ * The wrapper sits outside of the cancellation and generic type checks of the listener, so
+ * invocations those checks reject are counted and timed as calls as well.
+ */
+public final class EventProfiler
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.profileEventListeners", "false"));
+
+    @Nullable
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+    private static final List<ListenerTimings> TIMINGS = new CopyOnWriteArrayList<>();
+
+    private EventProfiler(){}
+
+    @Nullable
+    private static com.sun.management.ThreadMXBean getThreadBean()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+        if (!sunBean.isThreadAllocatedMemorySupported())
+            return null;
+        if (!sunBean.isThreadAllocatedMemoryEnabled())
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+
+    /**
+     * Wraps the listener so that every invocation is recorded.
+     *
+     * @param listener The listener to wrap
+     * @param name The readable name of the listener
+     * @param owner The mod that registered the listener
+     * @param eventType The event type the listener subscribed to
+     * @return The profiling listener to register in place of the original one
+     */
+    public static IEventListener wrap(IEventListener listener, String name, ModContainer owner, Class<?> eventType)
+    {
+        ListenerTimings timings = new ListenerTimings(name, owner, eventType);
+        TIMINGS.add(timings);
+        return THREAD_BEAN == null ? new TimedListener(listener, timings) : new AllocationTimedListener(listener, timings, THREAD_BEAN);
+    }
+
+    /**
+     * Drops the timings of a listener that was unregistered from its bus.
+     *
+     * @param listener The listener returned by {@link #wrap}, other listeners are ignored
+     */
+    public static void remove(IEventListener listener)
+    {
+        if (listener instanceof TimedListener)
+            TIMINGS.remove(((TimedListener)listener).timings);
+    }
+
+    /**
+     * @return The timings of all listeners that are currently registered
+     */
+    public static ImmutableList<ListenerTimings> getTimings()
+    {
+        return ImmutableList.copyOf(TIMINGS);
+    }
+
+    /**
+     * @return If the allocated bytes of listeners are recorded on this JVM
+     */
+    public static boolean isTrackingAllocations()
+    {
+        return THREAD_BEAN != null;
+    }
+
+    /**
+     * Clears the recorded data of all listeners
+     */
+    public static void reset()
+    {
+        for (ListenerTimings timings : TIMINGS)
+            timings.reset();
+    }
+
+    public static final class ListenerTimings
+    {
+        private final String listener;
+        private final ModContainer owner;
+        private final Class<?> eventType;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private ListenerTimings(String listener, ModContainer owner, Class<?> eventType)
+        {
+            this.listener = listener;
+            this.owner = owner;
+            this.eventType = eventType;
+        }
+
+        private void record(long nanos)
+        {
+            calls.increment();
+            totalNanos.add(nanos);
+            if (nanos > maxNanos.get())
+                maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private void reset()
+        {
+            calls.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            allocatedBytes.reset();
+        }
+
+        public String getListener()
+        {
+            return listener;
+        }
+
+        public ModContainer getOwner()
+        {
+            return owner;
+        }
+
+        public Class<?> getEventType()
+        {
+            return eventType;
+        }
+
+        public long getCalls()
+        {
+            return calls.sum();
+        }
+
+        public long getTotalNanos()
+        {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos()
+        {
+            return maxNanos.get();
+        }
+
+        public long getAllocatedBytes()
+        {
+            return allocatedBytes.sum();
+        }
+    }
+
+    private static class TimedListener implements IEventListener
+    {
+        protected final IEventListener listener;
+        protected final ListenerTimings timings;
+
+        private TimedListener(IEventListener listener, ListenerTimings timings)
+        {
+            this.listener = listener;
+            this.timings = timings;
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            long start = System.nanoTime();
+            try
+            {
+                listener.invoke(event);
+            }
+            finally
+            {
+                timings.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return timings.getListener();
+        }
+    }
+
+    private static final class AllocationTimedListener extends TimedListener
+    {
+        private final com.sun.management.ThreadMXBean bean;
+
+        private AllocationTimedListener(IEventListener listener, ListenerTimings timings, com.sun.management.ThreadMXBean bean)
+        {
+            super(listener, timings);
+            this.bean = bean;
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            long thread = Thread.currentThread().getId();
+            long allocated = bean.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            try
+            {
+                listener.invoke(event);
+            }
+            finally
+            {
+                timings.record(System.nanoTime() - start);
+                timings.allocatedBytes.add(bean.getThreadAllocatedBytes(thread) - allocated);
+            }
+        }
+    }
+}
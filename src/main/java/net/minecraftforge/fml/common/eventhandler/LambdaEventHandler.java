@@ -0,0 +1,248 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.eventhandler;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+
+import net.minecraftforge.fml.common.ModContainer;
+
+import org.objectweb.asm.Type;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Alternative to {@link ASMEventHandler} which builds the call to the subscribed method with
+ * {@link LambdaMetafactory} instead of defining a new class in a shared class loader per method.
+ *
+ * The cancellation and generic type checks are decided once when the handler is created,
+ * so a listener that receives canceled events, or one for a final event type that is not cancelable,
+ * never checks the canceled state, and a listener without a generic filter never checks the generic type.
+ * Listeners for other event types also receive their sub events, which may be cancelable, so they
+ * check {@link Event#isCancelable()} on every invocation like {@link ASMEventHandler}.
+ *
+ * Enabled with the {@code fml.lambdaEventHandlers} system property. These handlers do not
+ * support the {@code fml.LogContext} debugging option of {@link ASMEventHandler}.
+ */
+public abstract class LambdaEventHandler implements IEventListener
+{
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType INVOKE_TYPE = MethodType.methodType(void.class, Event.class);
+
+    protected final IEventListener handler;
+    private final SubscribeEvent subInfo;
+    private final ModContainer owner;
+    private final String readable;
+
+    private LambdaEventHandler(IEventListener handler, SubscribeEvent subInfo, ModContainer owner, String readable)
+    {
+        this.handler = handler;
+        this.subInfo = subInfo;
+        this.owner = owner;
+        this.readable = readable;
+    }
+
+    /**
+     * Creates a listener for the specified subscribed method.
+     *
+     * @param target The instance the method is invoked on, or the class for static methods
+     * @param method The method annotated with {@link SubscribeEvent}
+     * @param owner The mod that registered the listener
+     * @param cancelable If the event type the method accepts is cancelable, its sub events may still be cancelable if it is not final
+     * @param isGeneric If the event type the method accepts is a {@link IGenericEvent}
+     */
+    public static LambdaEventHandler create(Object target, Method method, ModContainer owner, boolean cancelable, boolean isGeneric) throws Exception
+    {
+        IEventListener handler = createHandler(target, method);
+        SubscribeEvent subInfo = method.getAnnotation(SubscribeEvent.class);
+        String readable = "Lambda: " + target + " " + method.getName() + Type.getMethodDescriptor(method);
+
+        java.lang.reflect.Type filter = null;
+        if (isGeneric)
+        {
+            java.lang.reflect.Type type = method.getGenericParameterTypes()[0];
+            if (type instanceof ParameterizedType)
+            {
+                filter = ((ParameterizedType)type).getActualTypeArguments()[0];
+            }
+        }
+
+        boolean finalType = Modifier.isFinal(method.getParameterTypes()[0].getModifiers());
+        boolean checkCanceled = !subInfo.receiveCanceled() && (cancelable || !finalType);
+        if (filter != null)
+            return checkCanceled ? new CanceledFiltered(handler, subInfo, owner, readable, filter) : new Filtered(handler, subInfo, owner, readable, filter);
+        return checkCanceled ? new Canceled(handler, subInfo, owner, readable) : new Direct(handler, subInfo, owner, readable);
+    }
+
+    private static IEventListener createHandler(Object target, Method method) throws Exception
+    {
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        Class<?> eventType = method.getParameterTypes()[0];
+
+        if (isAccessible(method))
+        {
+            MethodHandle impl = LOOKUP.unreflect(method);
+            MethodType factoryType = isStatic ? MethodType.methodType(IEventListener.class) : MethodType.methodType(IEventListener.class, method.getDeclaringClass());
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "invoke", factoryType, INVOKE_TYPE, impl, MethodType.methodType(void.class, eventType));
+            try
+            {
+                return isStatic ? (IEventListener)site.getTarget().invoke() : (IEventListener)site.getTarget().invoke(target);
+            }
+            catch (Throwable t)
+            {
+                Throwables.throwIfInstanceOf(t, Exception.class);
+                Throwables.throwIfUnchecked(t);
+                throw new RuntimeException(t);
+            }
+        }
+
+        // The generated lambda class can not link against classes we can not see, fall back to a plain method handle.
+        method.setAccessible(true);
+        MethodHandle handle = LOOKUP.unreflect(method);
+        if (!isStatic)
+            handle = handle.bindTo(target);
+        return new HandleListener(handle.asType(INVOKE_TYPE));
+    }
+
+    private static boolean isAccessible(Method method)
+    {
+        if (!Modifier.isPublic(method.getModifiers()))
+            return false;
+        for (Class<?> cls = method.getDeclaringClass(); cls != null; cls = cls.getEnclosingClass())
+        {
+            if (!Modifier.isPublic(cls.getModifiers()))
+                return false;
+        }
+        return true;
+    }
+
+    public EventPriority getPriority()
+    {
+        return subInfo.priority();
+    }
+
+    public ModContainer getOwner()
+    {
+        return owner;
+    }
+
+    @Override
+    public String toString()
+    {
+        return readable;
+    }
+
+    private static final class Direct extends LambdaEventHandler
+    {
+        private Direct(IEventListener handler, SubscribeEvent subInfo, ModContainer owner, String readable)
+        {
+            super(handler, subInfo, owner, readable);
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            handler.invoke(event);
+        }
+    }
+
+    private static final class Canceled extends LambdaEventHandler
+    {
+        private Canceled(IEventListener handler, SubscribeEvent subInfo, ModContainer owner, String readable)
+        {
+            super(handler, subInfo, owner, readable);
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            if (!event.isCancelable() || !event.isCanceled())
+                handler.invoke(event);
+        }
+    }
+
+    private static final class Filtered extends LambdaEventHandler
+    {
+        private final java.lang.reflect.Type filter;
+
+        private Filtered(IEventListener handler, SubscribeEvent subInfo, ModContainer owner, String readable, java.lang.reflect.Type filter)
+        {
+            super(handler, subInfo, owner, readable);
+            this.filter = filter;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void invoke(Event event)
+        {
+            if (filter == ((IGenericEvent)event).getGenericType())
+                handler.invoke(event);
+        }
+    }
+
+    private static final class CanceledFiltered extends LambdaEventHandler
+    {
+        private final java.lang.reflect.Type filter;
+
+        private CanceledFiltered(IEventListener handler, SubscribeEvent subInfo, ModContainer owner, String readable, java.lang.reflect.Type filter)
+        {
+            super(handler, subInfo, owner, readable);
+            this.filter = filter;
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public void invoke(Event event)
+        {
+            if ((!event.isCancelable() || !event.isCanceled()) && filter == ((IGenericEvent)event).getGenericType())
+                handler.invoke(event);
+        }
+    }
+
+    private static final class HandleListener implements IEventListener
+    {
+        private final MethodHandle handle;
+
+        private HandleListener(MethodHandle handle)
+        {
+            this.handle = handle;
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            try
+            {
+                handle.invokeExact(event);
+            }
+            catch (Throwable t)
+            {
+                Throwables.throwIfUnchecked(t);
+                throw new RuntimeException(t);
+            }
+        }
+    }
+}
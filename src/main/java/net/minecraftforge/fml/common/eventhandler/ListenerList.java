@@ -25,15 +25,25 @@ import com.google.common.collect.Lists;
 
 import javax.annotation.Nullable;
 
-
+/**
+ * Holds the listeners registered for a single event class, one instance per event bus.
+ *
+ * Listeners are stored in immutable per priority arrays which are replaced on every change.
+ * The flattened array returned by {@link #getListeners(int)} is rebuilt lazily, in a single pass
+ * over this list and its parents, and published through a volatile field. Posting an event therefore
+ * never takes a lock unless the listeners changed since the last post.
+ * All modifications, and the rebuilds, are serialized on {@link #LOCK}.
+ */
 public class ListenerList
 {
+    private static final Object LOCK = new Object();
+    private static final IEventListener[] EMPTY = new IEventListener[0];
     private static ImmutableList<ListenerList> allLists = ImmutableList.of();
     private static int maxSize = 0;
 
     @Nullable
     private ListenerList parent;
-    private ListenerListInst[] lists = new ListenerListInst[0];
+    private volatile ListenerListInst[] lists = new ListenerListInst[0];
 
     public ListenerList()
     {
@@ -48,64 +58,71 @@ public class ListenerList
         resizeLists(maxSize);
     }
 
-    private synchronized static void extendMasterList(ListenerList inst)
+    private static void extendMasterList(ListenerList inst)
     {
-        ImmutableList.Builder<ListenerList> builder = ImmutableList.builder();
-        builder.addAll(allLists);
-        builder.add(inst);
-        allLists = builder.build();
+        synchronized (LOCK)
+        {
+            ImmutableList.Builder<ListenerList> builder = ImmutableList.builder();
+            builder.addAll(allLists);
+            builder.add(inst);
+            allLists = builder.build();
+        }
     }
 
     public static void resize(int max)
     {
-        if (max <= maxSize)
+        synchronized (LOCK)
         {
-            return;
-        }
-        for (ListenerList list : allLists)
-        {
-            list.resizeLists(max);
+            if (max <= maxSize)
+            {
+                return;
+            }
+            for (ListenerList list : allLists)
+            {
+                list.resizeLists(max);
+            }
+            maxSize = max;
         }
-        maxSize = max;
     }
 
     public void resizeLists(int max)
     {
-        if (parent != null)
-        {
-            parent.resizeLists(max);
-        }
-
-        if (lists.length >= max)
-        {
-            return;
-        }
-
-        ListenerListInst[] newList = new ListenerListInst[max];
-        int x = 0;
-        for (; x < lists.length; x++)
-        {
-            newList[x] = lists[x];
-        }
-        for(; x < max; x++)
+        synchronized (LOCK)
         {
             if (parent != null)
             {
-                newList[x] = new ListenerListInst(parent.getInstance(x));
+                parent.resizeLists(max);
+            }
+
+            if (lists.length >= max)
+            {
+                return;
             }
-            else
+
+            ListenerListInst[] newList = Arrays.copyOf(lists, max);
+            for (int x = lists.length; x < max; x++)
             {
-                newList[x] = new ListenerListInst();
+                if (parent != null)
+                {
+                    newList[x] = new ListenerListInst(parent.getInstance(x));
+                }
+                else
+                {
+                    newList[x] = new ListenerListInst();
+                }
             }
+            lists = newList;
         }
-        lists = newList;
     }
 
     public static void clearBusID(int id)
     {
-        for (ListenerList list : allLists)
+        synchronized (LOCK)
         {
-            list.lists[id].dispose();
+            for (ListenerList list : allLists)
+            {
+                list.lists[id].dispose();
+            }
         }
     }
 
@@ -121,49 +138,56 @@ public class ListenerList
 
     public void register(int id, EventPriority priority, IEventListener listener)
     {
-        lists[id].register(priority, listener);
+        synchronized (LOCK)
+        {
+            lists[id].register(priority, listener);
+        }
     }
 
     public void unregister(int id, IEventListener listener)
     {
-        lists[id].unregister(listener);
+        synchronized (LOCK)
+        {
+            lists[id].unregister(listener);
+        }
     }
 
+    /**
+     * Removes the listener from every event's list on the specified bus.
+     * This visits every ListenerList in existence, if the list the listener was registered to is known
+     * use {@link #unregister(int, IEventListener)} instead.
+     */
     public static void unregisterAll(int id, IEventListener listener)
     {
-        for (ListenerList list : allLists)
+        synchronized (LOCK)
         {
-            list.unregister(id, listener);
+            for (ListenerList list : allLists)
+            {
+                list.unregister(id, listener);
+            }
         }
     }
 
     private class ListenerListInst
     {
-        private boolean rebuild = true;
-        private IEventListener[] listeners;
-        private ArrayList<ArrayList<IEventListener>> priorities;
+        /**
+         * The flattened listeners including all parents, null if it needs to be rebuilt.
+         */
+        private volatile IEventListener[] listeners;
+        private IEventListener[][] priorities;
         private ListenerListInst parent;
         private List<ListenerListInst> children;
 
 
         private ListenerListInst()
         {
-            int count = EventPriority.values().length;
-            priorities = new ArrayList<ArrayList<IEventListener>>(count);
-
-            for (int x = 0; x < count; x++)
-            {
-                priorities.add(new ArrayList<IEventListener>());
-            }
+            priorities = new IEventListener[EventPriority.values().length][];
+            Arrays.fill(priorities, EMPTY);
         }
 
         public void dispose()
         {
-            for (ArrayList<IEventListener> listeners : priorities)
-            {
-                listeners.clear();
-            }
-            priorities.clear();
+            Arrays.fill(priorities, EMPTY);
             parent = null;
             listeners = null;
             if (children != null)
@@ -177,25 +201,6 @@ public class ListenerList
             this.parent.addChild(this);
         }
 
-        /**
-         * Returns a ArrayList containing all listeners for this event,
-         * and all parent events for the specified priority.
-         *
-         * The list is returned with the listeners for the children events first.
-         *
-         * @param priority The Priority to get
-         * @return ArrayList containing listeners
-         */
-        public ArrayList<IEventListener> getListeners(EventPriority priority)
-        {
-            ArrayList<IEventListener> ret = new ArrayList<IEventListener>(priorities.get(priority.ordinal()));
-            if (parent != null)
-            {
-                ret.addAll(parent.getListeners(priority));
-            }
-            return ret;
-        }
-
         /**
          * Returns a full list of all listeners for all priority levels.
          * Including all parent listeners.
@@ -208,18 +213,22 @@ public class ListenerList
          */
         public IEventListener[] getListeners()
         {
-            if (shouldRebuild()) buildCache();
-            return listeners;
-        }
-
-        protected boolean shouldRebuild()
-        {
-            return rebuild;// || (parent != null && parent.shouldRebuild());
+            IEventListener[] ret = listeners;
+            if (ret == null)
+            {
+                synchronized (LOCK)
+                {
+                    ret = listeners;
+                    if (ret == null)
+                        ret = buildCache();
+                }
+            }
+            return ret;
         }
 
         protected void forceRebuild()
         {
-            this.rebuild = true;
+            this.listeners = null;
             if (this.children != null)
             {
                 for (ListenerListInst child : this.children)
@@ -235,42 +244,71 @@ public class ListenerList
         }
 
         /**
-         * Rebuild the local Array of listeners, returns early if there is no work to do.
+         * Rebuild the local Array of listeners in a single pass over this list and its parents.
+         * The listeners for the children events are placed before their parents within each priority.
          */
-        private void buildCache()
+        private IEventListener[] buildCache()
         {
-            if(parent != null && parent.shouldRebuild())
+            int size = 0;
+            for (ListenerListInst inst = this; inst != null; inst = inst.parent)
             {
-                parent.buildCache();
+                for (IEventListener[] list : inst.priorities)
+                    size += list.length;
             }
 
-            ArrayList<IEventListener> ret = new ArrayList<IEventListener>();
+            if (size == 0)
+            {
+                listeners = EMPTY;
+                return EMPTY;
+            }
+
+            IEventListener[] ret = new IEventListener[size + priorities.length];
+            int index = 0;
             for (EventPriority value : EventPriority.values())
             {
-                List<IEventListener> listeners = getListeners(value);
-                if (listeners.size() > 0)
+                int phase = index++; //Add the priority to notify the event of it's current phase.
+                for (ListenerListInst inst = this; inst != null; inst = inst.parent)
                 {
-                    ret.add(value); //Add the priority to notify the event of it's current phase.
-                    ret.addAll(listeners);
+                    IEventListener[] list = inst.priorities[value.ordinal()];
+                    System.arraycopy(list, 0, ret, index, list.length);
+                    index += list.length;
                 }
+                if (index == phase + 1)
+                    index = phase; // No listeners at this priority, drop the phase marker
+                else
+                    ret[phase] = value;
             }
-            listeners = ret.toArray(new IEventListener[ret.size()]);
-            rebuild = false;
+            if (index != ret.length)
+                ret = Arrays.copyOf(ret, index);
+            listeners = ret;
+            return ret;
         }
 
         public void register(EventPriority priority, IEventListener listener)
         {
-            priorities.get(priority.ordinal()).add(listener);
+            IEventListener[] old = priorities[priority.ordinal()];
+            IEventListener[] list = Arrays.copyOf(old, old.length + 1);
+            list[old.length] = listener;
+            priorities[priority.ordinal()] = list;
             this.forceRebuild();
         }
 
         public void unregister(IEventListener listener)
         {
-            for(ArrayList<IEventListener> list : priorities)
+            for (int x = 0; x < priorities.length; x++)
             {
-                if (list.remove(listener))
+                IEventListener[] list = priorities[x];
+                for (int y = 0; y < list.length; y++)
                 {
-                    this.forceRebuild();
+                    if (listener.equals(list[y]))
+                    {
+                        IEventListener[] copy = new IEventListener[list.length - 1];
+                        System.arraycopy(list, 0, copy, 0, y);
+                        System.arraycopy(list, y + 1, copy, y, list.length - y - 1);
+                        priorities[x] = copy;
+                        this.forceRebuild();
+                        break;
+                    }
                 }
             }
         }
@@ -30,6 +30,7 @@ import net.minecraft.network.NetHandlerPlayServer;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.eventhandler.EventBus;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.network.handshake.MessageBatching;
 import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
 import net.minecraftforge.fml.relauncher.Side;
 
@@ -48,6 +49,7 @@ import javax.annotation.Nullable;
  *
  */
 public class FMLEventChannel {
+    private final String channelName;
     private EnumMap<Side, FMLEmbeddedChannel> channels;
     private EventBus eventBus;
 
@@ -98,6 +100,7 @@ public class FMLEventChannel {
     private static EventFactory factory = FMLCommonHandler.instance().getSide() == Side.CLIENT ? EventFactory.CLIENT : EventFactory.SERVER;
     FMLEventChannel(String name)
     {
+        this.channelName = name;
         this.channels = NetworkRegistry.INSTANCE.newChannel(name, new NetworkEventFiringHandler(this));
         this.eventBus = new EventBus();
     }
@@ -198,4 +201,26 @@ public class FMLEventChannel {
         channels.get(Side.CLIENT).attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TOSERVER);
         channels.get(Side.CLIENT).writeAndFlush(pkt).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
     }
+
+    /**
+     * Gathers the packets this channel sends to each client during a server tick, and sends them as a single packet
+     * at the end of the tick, in the order they were sent. Use {@link #flush(EntityPlayerMP)} for packets that should
+     * not wait for the end of the tick. Clients running a version of Forge without batching get each packet directly.
+     *
+     * @param batched Whether to batch outgoing packets
+     */
+    public void setBatched(boolean batched)
+    {
+        MessageBatching.setBatched(channelName, batched);
+    }
+
+    /**
+     * Sends the packets batched for the player right away, including those of other channels.
+     *
+     * @param player The player to flush
+     */
+    public void flush(EntityPlayerMP player)
+    {
+        MessageBatching.flush(player);
+    }
 }
@@ -37,8 +37,17 @@ import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
 
 @Sharable
 public abstract class FMLIndexedMessageToMessageCodec<A> extends MessageToMessageCodec<FMLProxyPacket, A> {
+    /**
+     * Encode messages into a pooled buffer from the channel's allocator, sized from the recent sizes of the message type,
+     * and send that buffer as the payload. The packet is marked as pooled, so the payload is released once it was written,
+     * see {@link FMLProxyPacket#isPooled()}.
+     */
+    private static final boolean POOLED_ENCODING = Boolean.parseBoolean(System.getProperty("fml.pooledPacketEncoding", "false"));
+    private static final int MIN_ENCODE_CAPACITY = 32;
     private TByteObjectHashMap<Class<? extends A>> discriminators = new TByteObjectHashMap<Class<? extends A>>();
     private TObjectByteHashMap<Class<? extends A>> types = new TObjectByteHashMap<Class<? extends A>>();
+    // Moving average of the encoded size per discriminator, only used with pooled encoding. Races only skew the estimate.
+    private final int[] encodedSizes = new int[256];
 
     /**
      * Make this accessible to subclasses
@@ -65,11 +74,19 @@ public abstract class FMLIndexedMessageToMessageCodec<A> extends MessageToMessag
     @Override
     protected final void encode(ChannelHandlerContext ctx, A msg, List<Object> out) throws Exception
     {
-        PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
         byte discriminator = types.get(msg.getClass());
-        buffer.writeByte(discriminator);
-        encodeInto(ctx, msg, buffer);
-        FMLProxyPacket proxy = new FMLProxyPacket(buffer/*.copy()*/, ctx.channel().attr(NetworkRegistry.FML_CHANNEL).get());
+        PacketBuffer buffer;
+        if (POOLED_ENCODING)
+        {
+            buffer = encodePooled(ctx, msg, discriminator);
+        }
+        else
+        {
+            buffer = new PacketBuffer(Unpooled.buffer());
+            buffer.writeByte(discriminator);
+            encodeInto(ctx, msg, buffer);
+        }
+        FMLProxyPacket proxy = new FMLProxyPacket(buffer/*.copy()*/, ctx.channel().attr(NetworkRegistry.FML_CHANNEL).get(), POOLED_ENCODING);
         WeakReference<FMLProxyPacket> ref = ctx.channel().attr(INBOUNDPACKETTRACKER).get().get();
         FMLProxyPacket old = ref == null ? null : ref.get();
         if (old != null)
@@ -79,6 +96,26 @@ public abstract class FMLIndexedMessageToMessageCodec<A> extends MessageToMessag
         out.add(proxy);
     }
 
+    private PacketBuffer encodePooled(ChannelHandlerContext ctx, A msg, byte discriminator) throws Exception
+    {
+        int index = discriminator & 0xFF;
+        int estimate = encodedSizes[index];
+        ByteBuf payload = ctx.alloc().heapBuffer(Math.max(MIN_ENCODE_CAPACITY, estimate + (estimate >> 2)));
+        try
+        {
+            payload.writeByte(discriminator);
+            encodeInto(ctx, msg, new PacketBuffer(payload));
+        }
+        catch (Exception e)
+        {
+            payload.release();
+            throw e;
+        }
+        int size = payload.readableBytes();
+        encodedSizes[index] = estimate == 0 ? size : estimate + (size - estimate) / 8;
+        return new PacketBuffer(payload);
+    }
+
     public abstract void decodeInto(ChannelHandlerContext ctx, ByteBuf source, A msg);
 
     @Override
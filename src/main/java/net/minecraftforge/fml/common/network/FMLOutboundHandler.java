@@ -25,10 +25,17 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.util.AttributeKey;
 
+import java.util.Collection;
 import java.util.List;
 
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.NetworkManager;
+import net.minecraft.server.management.PlayerChunkMapEntry;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.WorldServer;
+import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.network.NetworkRegistry.TargetPoint;
@@ -177,18 +184,7 @@ public class FMLOutboundHandler extends ChannelOutboundHandlerAdapter {
             @Override
             public List<NetworkDispatcher> selectNetworks(Object args, ChannelHandlerContext context, FMLProxyPacket packet)
             {
-                int dimension = (Integer)args;
-                ImmutableList.Builder<NetworkDispatcher> builder = ImmutableList.builder();
-                for (EntityPlayerMP player : FMLCommonHandler.instance().getMinecraftServerInstance().getPlayerList().getPlayers())
-                {
-                    if (dimension == player.dimension)
-                    {
-                        NetworkDispatcher dispatcher = player.connection.netManager.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
-                        // Null dispatchers may exist for fake players - skip them
-                        if (dispatcher != null) builder.add(dispatcher);
-                    }
-                }
-                return builder.build();
+                return PlayerTargetIndex.getDispatchers((Integer)args);
             }
         },
         /**
@@ -211,24 +207,62 @@ public class FMLOutboundHandler extends ChannelOutboundHandlerAdapter {
             @Override
             public List<NetworkDispatcher> selectNetworks(Object args, ChannelHandlerContext context, FMLProxyPacket packet)
             {
-                TargetPoint tp = (TargetPoint)args;
-                ImmutableList.Builder<NetworkDispatcher> builder = ImmutableList.builder();
-                for (EntityPlayerMP player : FMLCommonHandler.instance().getMinecraftServerInstance().getPlayerList().getPlayers())
+                return PlayerTargetIndex.getDispatchersAround((TargetPoint)args);
+            }
+        },
+        /**
+         * The packet is sent to all players watching the chunk containing the {@link TargetPoint} argument supplied.
+         * The range of the point is ignored.
+         */
+        TRACKING_POINT(Sets.immutableEnumSet(Side.SERVER))
+        {
+            @Override
+            public void validateArgs(Object args)
+            {
+                if (!(args instanceof TargetPoint))
                 {
-                    if (player.dimension == tp.dimension)
-                    {
-                        double d4 = tp.x - player.posX;
-                        double d5 = tp.y - player.posY;
-                        double d6 = tp.z - player.posZ;
+                    throw new RuntimeException("TRACKING_POINT expects a TargetPoint argument");
+                }
+            }
+
+            @Override
+            public List<NetworkDispatcher> selectNetworks(Object args, ChannelHandlerContext context, FMLProxyPacket packet)
+            {
+                TargetPoint tp = (TargetPoint)args;
+                WorldServer world = DimensionManager.getWorld(tp.dimension);
+                if (world == null)
+                    return ImmutableList.of();
 
-                        if (d4 * d4 + d5 * d5 + d6 * d6 < tp.range * tp.range)
-                        {
-                            NetworkDispatcher dispatcher = player.connection.netManager.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
-                            if (dispatcher != null) builder.add(dispatcher);
-                        }
-                    }
+                PlayerChunkMapEntry entry = world.getPlayerChunkMap().getEntry(MathHelper.floor(tp.x) >> 4, MathHelper.floor(tp.z) >> 4);
+                if (entry == null)
+                    return ImmutableList.of();
+
+                return getDispatchers(entry.getWatchingPlayers());
+            }
+        },
+        /**
+         * The packet is sent to all players tracking the {@link Entity} argument supplied.
+         * This does not include the entity itself if it is a player.
+         */
+        TRACKING_ENTITY(Sets.immutableEnumSet(Side.SERVER))
+        {
+            @Override
+            public void validateArgs(Object args)
+            {
+                if (!(args instanceof Entity))
+                {
+                    throw new RuntimeException("TRACKING_ENTITY expects an Entity argument");
                 }
-                return builder.build();
+            }
+
+            @Override
+            public List<NetworkDispatcher> selectNetworks(Object args, ChannelHandlerContext context, FMLProxyPacket packet)
+            {
+                Entity entity = (Entity)args;
+                if (!(entity.world instanceof WorldServer))
+                    return ImmutableList.of();
+
+                return getDispatchers(((WorldServer)entity.world).getEntityTracker().getTrackingPlayers(entity));
             }
         },
         /**
@@ -250,6 +284,19 @@ public class FMLOutboundHandler extends ChannelOutboundHandlerAdapter {
             }
         };
 
+        private static List<NetworkDispatcher> getDispatchers(Collection<? extends EntityPlayer> players)
+        {
+            ImmutableList.Builder<NetworkDispatcher> builder = ImmutableList.builder();
+            for (EntityPlayer player : players)
+            {
+                if (!(player instanceof EntityPlayerMP) || player instanceof FakePlayer)
+                    continue;
+                NetworkDispatcher dispatcher = ((EntityPlayerMP)player).connection.netManager.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
+                if (dispatcher != null) builder.add(dispatcher);
+            }
+            return builder.build();
+        }
+
         private OutboundTarget(ImmutableSet<Side> sides)
         {
             this.allowed = sides;
@@ -299,13 +346,18 @@ public class FMLOutboundHandler extends ChannelOutboundHandlerAdapter {
         // This will drop the messages into the output queue at the embedded channel
         if (dispatchers == null)
         {
-            ctx.write(msg, promise);
+            // The caller keeps the packet and may send it any number of times, do not hand out a pooled payload
+            ctx.write(pkt.isPooled() ? pkt.toUnpooled() : msg, promise);
             return;
         }
+        boolean broadcast = dispatchers.size() > 1;
         for (NetworkDispatcher targetDispatcher : dispatchers)
         {
             pkt.payload().retain();
-            targetDispatcher.sendProxy(pkt);
+            if (broadcast)
+                targetDispatcher.sendProxyBroadcast(pkt);
+            else
+                targetDispatcher.sendProxy(pkt);
         }
         pkt.payload().release();
     }
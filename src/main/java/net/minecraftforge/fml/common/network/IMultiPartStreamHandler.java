@@ -0,0 +1,59 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.network;
+
+import io.netty.buffer.ByteBuf;
+import net.minecraftforge.fml.common.network.handshake.NetworkDispatcher;
+
+/**
+ * Receives a large packet split into FML|MP parts as the parts arrive, instead of the whole packet
+ * once all parts arrived. Register with {@link NetworkDispatcher#setMultiPartStreamHandler(String, IMultiPartStreamHandler)}.
+ *
+ * All methods are called on the network thread of the connection, parts are delivered in order.
+ */
+public interface IMultiPartStreamHandler
+{
+    /**
+     * Called when the first part of a packet arrives.
+     *
+     * @param totalLength The length of the whole packet
+     */
+    void onStart(NetworkDispatcher dispatcher, int totalLength);
+
+    /**
+     * Called for each part, the buffer is only valid during the call and must be retained to be kept.
+     *
+     * @param data The data of the part
+     * @param offset The offset of the part in the whole packet
+     */
+    void onPart(NetworkDispatcher dispatcher, ByteBuf data, int offset);
+
+    /**
+     * Called once all parts were received.
+     */
+    void onComplete(NetworkDispatcher dispatcher);
+
+    /**
+     * Called instead of {@link #onComplete(NetworkDispatcher)} when the packet was invalid and the connection is closed.
+     */
+    default void onAbort(NetworkDispatcher dispatcher)
+    {
+    }
+}
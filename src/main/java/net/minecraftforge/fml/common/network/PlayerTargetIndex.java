@@ -0,0 +1,250 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.network;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraftforge.common.util.FakePlayer;
+import net.minecraftforge.event.entity.EntityEvent;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.network.NetworkRegistry.TargetPoint;
+import net.minecraftforge.fml.common.network.handshake.NetworkDispatcher;
+
+/**
+ * Index of the players connected to the server by dimension and chunk, used by {@link FMLOutboundHandler.OutboundTarget}
+ * to select the players of a dimension or around a point without scanning all players.
+ *
+ * The index is rebuilt when a player logged in or out, changed dimension or respawned. A player entering another
+ * chunk is only moved between the chunk buckets of its dimension.
+ */
+public class PlayerTargetIndex
+{
+    private static volatile Index index;
+
+    static List<NetworkDispatcher> getDispatchers(int dimension)
+    {
+        DimensionIndex dim = getIndex().dimensions.get(dimension);
+        if (dim == null)
+            return ImmutableList.of();
+        return dim.dispatchers;
+    }
+
+    static List<NetworkDispatcher> getDispatchersAround(TargetPoint tp)
+    {
+        DimensionIndex dim = getIndex().dimensions.get(tp.dimension);
+        if (dim == null)
+            return ImmutableList.of();
+
+        double rangeSq = tp.range * tp.range;
+        // Players are moved to their new chunk when the world notices the change, include a chunk of margin for the ones that moved since
+        int minX = (MathHelper.floor(tp.x - tp.range) >> 4) - 1;
+        int maxX = (MathHelper.floor(tp.x + tp.range) >> 4) + 1;
+        int minZ = (MathHelper.floor(tp.z - tp.range) >> 4) - 1;
+        int maxZ = (MathHelper.floor(tp.z + tp.range) >> 4) + 1;
+
+        ImmutableList.Builder<NetworkDispatcher> builder = ImmutableList.builder();
+        if ((long)(maxX - minX + 1) * (maxZ - minZ + 1) > dim.players.size())
+        {
+            // Fewer players than chunks in range, checking all of them is cheaper
+            for (Entry entry : dim.players)
+                entry.addIfInRange(builder, tp, rangeSq);
+        }
+        else
+        {
+            synchronized (dim)
+            {
+                for (int x = minX; x <= maxX; x++)
+                {
+                    for (int z = minZ; z <= maxZ; z++)
+                    {
+                        List<Entry> chunk = dim.chunks.get(ChunkPos.asLong(x, z));
+                        if (chunk != null)
+                        {
+                            for (Entry entry : chunk)
+                                entry.addIfInRange(builder, tp, rangeSq);
+                        }
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Forces the index to be rebuilt before it is used next.
+     */
+    public static void invalidate()
+    {
+        index = null;
+    }
+
+    private static Index getIndex()
+    {
+        Index current = index;
+        if (current == null)
+        {
+            current = new Index(FMLCommonHandler.instance().getMinecraftServerInstance().getPlayerList().getPlayers());
+            index = current;
+        }
+        return current;
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event)
+    {
+        invalidate();
+    }
+
+    @SubscribeEvent
+    public static void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event)
+    {
+        invalidate();
+    }
+
+    @SubscribeEvent
+    public static void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event)
+    {
+        invalidate();
+    }
+
+    @SubscribeEvent
+    public static void onPlayerRespawn(PlayerEvent.PlayerRespawnEvent event)
+    {
+        invalidate();
+    }
+
+    @SubscribeEvent
+    public static void onEnteringChunk(EntityEvent.EnteringChunk event)
+    {
+        if (!(event.getEntity() instanceof EntityPlayerMP) || event.getEntity() instanceof FakePlayer)
+            return;
+        Index current = index;
+        if (current == null)
+            return;
+        Entry entry = current.entries.get(event.getEntity());
+        if (entry == null)
+            invalidate(); // Not indexed yet, let the next lookup pick it up
+        else
+            entry.dimension.move(entry, ChunkPos.asLong(event.getNewChunkX(), event.getNewChunkZ()));
+    }
+
+    private static class Index
+    {
+        private final Int2ObjectOpenHashMap<DimensionIndex> dimensions = new Int2ObjectOpenHashMap<DimensionIndex>();
+        private final Map<EntityPlayerMP, Entry> entries = new IdentityHashMap<EntityPlayerMP, Entry>();
+
+        private Index(List<EntityPlayerMP> players)
+        {
+            for (EntityPlayerMP player : players)
+            {
+                if (player instanceof FakePlayer)
+                    continue;
+                NetworkDispatcher dispatcher = player.connection.netManager.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
+                // Null dispatchers may exist for fake players - skip them
+                if (dispatcher == null)
+                    continue;
+
+                DimensionIndex dim = dimensions.get(player.dimension);
+                if (dim == null)
+                {
+                    dim = new DimensionIndex();
+                    dimensions.put(player.dimension, dim);
+                }
+                Entry entry = new Entry(player, dispatcher, dim);
+                entries.put(player, entry);
+                dim.players.add(entry);
+                dim.dispatchers.add(dispatcher);
+                dim.add(entry, ChunkPos.asLong(MathHelper.floor(player.posX) >> 4, MathHelper.floor(player.posZ) >> 4));
+            }
+            for (DimensionIndex dim : dimensions.values())
+                dim.dispatchers = ImmutableList.copyOf(dim.dispatchers);
+        }
+    }
+
+    private static class DimensionIndex
+    {
+        private final List<Entry> players = new ArrayList<Entry>();
+        // Guarded by this, players move between chunks on the server thread while packets may be sent from others
+        private final Long2ObjectOpenHashMap<List<Entry>> chunks = new Long2ObjectOpenHashMap<List<Entry>>();
+        private List<NetworkDispatcher> dispatchers = new ArrayList<NetworkDispatcher>();
+
+        private synchronized void add(Entry entry, long chunk)
+        {
+            List<Entry> list = chunks.get(chunk);
+            if (list == null)
+            {
+                list = new ArrayList<Entry>(2);
+                chunks.put(chunk, list);
+            }
+            list.add(entry);
+            entry.chunk = chunk;
+        }
+
+        private synchronized void move(Entry entry, long chunk)
+        {
+            if (entry.chunk == chunk)
+                return;
+            List<Entry> list = chunks.get(entry.chunk);
+            if (list != null)
+            {
+                list.remove(entry);
+                if (list.isEmpty())
+                    chunks.remove(entry.chunk);
+            }
+            add(entry, chunk);
+        }
+    }
+
+    private static class Entry
+    {
+        private final EntityPlayerMP player;
+        private final NetworkDispatcher dispatcher;
+        private final DimensionIndex dimension;
+        private long chunk;
+
+        private Entry(EntityPlayerMP player, NetworkDispatcher dispatcher, DimensionIndex dimension)
+        {
+            this.player = player;
+            this.dispatcher = dispatcher;
+            this.dimension = dimension;
+        }
+
+        private void addIfInRange(ImmutableList.Builder<NetworkDispatcher> builder, TargetPoint tp, double rangeSq)
+        {
+            double dx = tp.x - player.posX;
+            double dy = tp.y - player.posY;
+            double dz = tp.z - player.posZ;
+            if (dx * dx + dy * dy + dz * dz < rangeSq)
+                builder.add(dispatcher);
+        }
+    }
+}
@@ -46,6 +46,10 @@ public class ChannelRegistrationHandler extends SimpleChannelInboundHandler<FMLP
             String channels = new String(data, StandardCharsets.UTF_8);
             String[] split = channels.split("\0");
             Set<String> channelSet = ImmutableSet.copyOf(split);
+            if (side == Side.SERVER && msg.getDispatcher() != null && channelSet.contains(NetworkDispatcher.BATCH_CHANNEL))
+            {
+                msg.getDispatcher().setRemoteBatching(msg.channel().equals("REGISTER"));
+            }
             FMLCommonHandler.instance().fireNetRegistrationEvent(manager, channelSet, msg.channel(), side);
             msg.payload().release();
         }
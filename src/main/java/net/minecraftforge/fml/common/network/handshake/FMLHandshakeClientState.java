@@ -95,6 +95,7 @@ enum FMLHandshakeClientState implements IHandshakeState<FMLHandshakeClientState>
                 NetworkDispatcher dispatcher = ctx.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
                 dispatcher.setOverrideDimension(serverHelloPacket.overrideDim());
             }
+            ctx.channel().attr(NetworkDispatcher.FML_REMOTE_PROTOCOL).set(serverHelloPacket.protocolVersion());
             ctx.writeAndFlush(new FMLHandshakeMessage.ClientHello()).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
             ctx.writeAndFlush(new FMLHandshakeMessage.ModList(Loader.instance().getActiveModList())).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
         }
@@ -116,6 +117,11 @@ enum FMLHandshakeClientState implements IHandshakeState<FMLHandshakeClientState>
             if (!ctx.channel().attr(NetworkDispatcher.IS_LOCAL).get())
             {
                 cons.accept(WAITINGSERVERCOMPLETE);
+                Byte serverProtocol = ctx.channel().attr(NetworkDispatcher.FML_REMOTE_PROTOCOL).get();
+                if (RegistrySnapshotCache.ENABLED && serverProtocol != null && serverProtocol >= 3)
+                {
+                    ctx.writeAndFlush(new FMLHandshakeMessage.RegistryCacheHashes(RegistrySnapshotCache.listHashes())).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+                }
             }
             else
             {
@@ -130,7 +136,6 @@ enum FMLHandshakeClientState implements IHandshakeState<FMLHandshakeClientState>
         @Override
         public void accept(ChannelHandlerContext ctx, FMLHandshakeMessage msg, Consumer<? super FMLHandshakeClientState> cons)
         {
-            FMLHandshakeMessage.RegistryData pkt = (FMLHandshakeMessage.RegistryData)msg;
             Map<ResourceLocation, ForgeRegistry.Snapshot> snap = ctx.channel().attr(NetworkDispatcher.FML_GAMEDATA_SNAPSHOT).get();
             if (snap == null)
             {
@@ -138,16 +143,41 @@ enum FMLHandshakeClientState implements IHandshakeState<FMLHandshakeClientState>
                 ctx.channel().attr(NetworkDispatcher.FML_GAMEDATA_SNAPSHOT).set(snap);
             }
 
-            ForgeRegistry.Snapshot entry = new ForgeRegistry.Snapshot();
-            entry.ids.putAll(pkt.getIdMap());
-            entry.dummied.addAll(pkt.getDummied());
-            entry.overrides.putAll(pkt.getOverrides());
-            snap.put(pkt.getName(), entry);
+            ResourceLocation name;
+            boolean hasMore;
+            ForgeRegistry.Snapshot entry;
+            if (msg instanceof FMLHandshakeMessage.CachedRegistryData)
+            {
+                FMLHandshakeMessage.CachedRegistryData pkt = (FMLHandshakeMessage.CachedRegistryData)msg;
+                name = pkt.getName();
+                hasMore = pkt.hasMore();
+                entry = RegistrySnapshotCache.resolve(pkt);
+                if (entry == null)
+                {
+                    cons.accept(ERROR);
+                    ctx.channel().attr(NetworkDispatcher.FML_GAMEDATA_SNAPSHOT).set(null);
+                    NetworkDispatcher dispatcher = ctx.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
+                    dispatcher.rejectHandshake("Registry cache mismatch for " + name + ", please reconnect");
+                    return;
+                }
+                FMLLog.log.debug("Resolved cached Mod Registry mapping for {} from a {} message", name, pkt.getMode() == FMLHandshakeMessage.CachedRegistryData.CACHED ? "cached" : pkt.getMode() == FMLHandshakeMessage.CachedRegistryData.DELTA ? "delta" : "full");
+            }
+            else
+            {
+                FMLHandshakeMessage.RegistryData pkt = (FMLHandshakeMessage.RegistryData)msg;
+                name = pkt.getName();
+                hasMore = pkt.hasMore();
+                entry = new ForgeRegistry.Snapshot();
+                entry.ids.putAll(pkt.getIdMap());
+                entry.dummied.addAll(pkt.getDummied());
+                entry.overrides.putAll(pkt.getOverrides());
+            }
+            snap.put(name, entry);
 
-            if (pkt.hasMore())
+            if (hasMore)
             {
                 cons.accept(WAITINGSERVERCOMPLETE);
-                FMLLog.log.debug("Received Mod Registry mapping for {}: {} IDs {} overrides {} dummied", pkt.getName(), entry.ids.size(), entry.overrides.size(), entry.dummied.size());
+                FMLLog.log.debug("Received Mod Registry mapping for {}: {} IDs {} overrides {} dummied", name, entry.ids.size(), entry.overrides.size(), entry.dummied.size());
                 return;
             }
 
@@ -30,6 +30,8 @@ public class FMLHandshakeCodec extends FMLIndexedMessageToMessageCodec<FMLHandsh
         addDiscriminator((byte)1, FMLHandshakeMessage.ClientHello.class);
         addDiscriminator((byte)2, FMLHandshakeMessage.ModList.class);
         addDiscriminator((byte)3, FMLHandshakeMessage.RegistryData.class);
+        addDiscriminator((byte)4, FMLHandshakeMessage.RegistryCacheHashes.class);
+        addDiscriminator((byte)5, FMLHandshakeMessage.CachedRegistryData.class);
         addDiscriminator((byte)-1, FMLHandshakeMessage.HandshakeAck.class);
         addDiscriminator((byte)-2, FMLHandshakeMessage.HandshakeReset.class);
     }
@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.fml.common.FMLLog;
@@ -40,13 +42,15 @@ import net.minecraftforge.registries.ForgeRegistry;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 
 public abstract class FMLHandshakeMessage {
     public static FMLProxyPacket makeCustomChannelRegistration(Set<String> channels)
     {
-        String salutation = Joiner.on('\0').join(Iterables.concat(Arrays.asList("FML|HS","FML", "FML|MP"),channels));
+        String salutation = Joiner.on('\0').join(Iterables.concat(Arrays.asList("FML|HS","FML", "FML|MP", NetworkDispatcher.BATCH_CHANNEL),channels));
         FMLProxyPacket proxy = new FMLProxyPacket(new PacketBuffer(Unpooled.wrappedBuffer(salutation.getBytes(StandardCharsets.UTF_8))), "REGISTER");
         return proxy;
     }
@@ -282,6 +286,203 @@ public abstract class FMLHandshakeMessage {
             return super.toString(side) + ":"+ids.size()+" mappings";
         }
     }
+    /**
+     * Sent by cache aware clients before acknowledging the server mod list, lists the registry snapshot
+     * hashes the client has stored. See {@link RegistrySnapshotCache}.
+     */
+    public static class RegistryCacheHashes extends FMLHandshakeMessage
+    {
+        private Map<ResourceLocation, List<HashCode>> hashes;
+
+        public RegistryCacheHashes()
+        {
+
+        }
+
+        public RegistryCacheHashes(Map<ResourceLocation, List<HashCode>> hashes)
+        {
+            this.hashes = hashes;
+        }
+
+        @Override
+        public void fromBytes(ByteBuf buffer)
+        {
+            int length = ByteBufUtils.readVarInt(buffer, 3);
+            hashes = Maps.newHashMap();
+
+            for (int i = 0; i < length; i++)
+            {
+                ResourceLocation name = new ResourceLocation(ByteBufUtils.readUTF8String(buffer));
+                int count = buffer.readUnsignedByte();
+                List<HashCode> list = Lists.newArrayList();
+                for (int j = 0; j < count; j++)
+                {
+                    byte[] hash = new byte[RegistrySnapshotCache.HASH_BYTES];
+                    buffer.readBytes(hash);
+                    if (list.size() < RegistrySnapshotCache.MAX_PER_REGISTRY)
+                        list.add(HashCode.fromBytes(hash));
+                }
+                hashes.put(name, list);
+            }
+        }
+
+        @Override
+        public void toBytes(ByteBuf buffer)
+        {
+            ByteBufUtils.writeVarInt(buffer, hashes.size(), 3);
+            for (Entry<ResourceLocation, List<HashCode>> entry : hashes.entrySet())
+            {
+                ByteBufUtils.writeUTF8String(buffer, entry.getKey().toString());
+                buffer.writeByte(entry.getValue().size());
+                for (HashCode hash : entry.getValue())
+                {
+                    buffer.writeBytes(hash.asBytes());
+                }
+            }
+        }
+
+        public Map<ResourceLocation, List<HashCode>> getHashes()
+        {
+            return hashes;
+        }
+
+        @Override
+        public String toString(Class<? extends Enum<?>> side)
+        {
+            return super.toString(side) + ":" + hashes.size() + " registries";
+        }
+    }
+
+    /**
+     * Replaces {@link RegistryData} for clients that sent {@link RegistryCacheHashes}. Carries the content hash
+     * of the registry and either the full snapshot, nothing if the client has it cached, or the changes against
+     * an older snapshot the client has. Names may be sent as a sorted, prefix compressed list.
+     */
+    public static class CachedRegistryData extends FMLHandshakeMessage
+    {
+        public static final byte FULL = 0;
+        public static final byte CACHED = 1;
+        public static final byte DELTA = 2;
+
+        public CachedRegistryData()
+        {
+
+        }
+
+        CachedRegistryData(boolean hasMore, ResourceLocation name, byte mode, HashCode hash, @Nullable HashCode baseHash, @Nullable ForgeRegistry.Snapshot snapshot, @Nullable Set<ResourceLocation> removed)
+        {
+            this.hasMore = hasMore;
+            this.name = name;
+            this.mode = mode;
+            this.hash = hash;
+            this.baseHash = baseHash;
+            this.snapshot = snapshot;
+            this.removed = removed;
+            this.compressNames = RegistrySnapshotCache.COMPRESS_NAMES;
+        }
+
+        private boolean hasMore;
+        private ResourceLocation name;
+        private byte mode;
+        private HashCode hash;
+        private HashCode baseHash;
+        private ForgeRegistry.Snapshot snapshot;
+        private Set<ResourceLocation> removed;
+        private boolean compressNames;
+
+        @Override
+        public void fromBytes(ByteBuf buffer)
+        {
+            this.hasMore = buffer.readBoolean();
+            this.name = new ResourceLocation(ByteBufUtils.readUTF8String(buffer));
+            this.mode = buffer.readByte();
+            this.hash = readHash(buffer);
+            if (mode == CACHED)
+            {
+                return;
+            }
+
+            this.compressNames = buffer.readBoolean();
+            if (mode == DELTA)
+            {
+                this.baseHash = readHash(buffer);
+                this.removed = RegistrySnapshotCache.readNames(buffer, compressNames);
+            }
+            this.snapshot = RegistrySnapshotCache.readSnapshot(buffer, compressNames);
+        }
+
+        @Override
+        public void toBytes(ByteBuf buffer)
+        {
+            buffer.writeBoolean(this.hasMore);
+            ByteBufUtils.writeUTF8String(buffer, this.name.toString());
+            buffer.writeByte(this.mode);
+            buffer.writeBytes(this.hash.asBytes());
+            if (mode == CACHED)
+            {
+                return;
+            }
+
+            buffer.writeBoolean(this.compressNames);
+            if (mode == DELTA)
+            {
+                buffer.writeBytes(this.baseHash.asBytes());
+                RegistrySnapshotCache.writeNames(buffer, this.removed, compressNames);
+            }
+            RegistrySnapshotCache.writeSnapshot(buffer, this.snapshot, compressNames);
+        }
+
+        private static HashCode readHash(ByteBuf buffer)
+        {
+            byte[] hash = new byte[RegistrySnapshotCache.HASH_BYTES];
+            buffer.readBytes(hash);
+            return HashCode.fromBytes(hash);
+        }
+
+        public boolean hasMore()
+        {
+            return this.hasMore;
+        }
+
+        public ResourceLocation getName()
+        {
+            return this.name;
+        }
+
+        public byte getMode()
+        {
+            return this.mode;
+        }
+
+        public HashCode getHash()
+        {
+            return this.hash;
+        }
+
+        public HashCode getBaseHash()
+        {
+            return this.baseHash;
+        }
+
+        /**
+         * The full snapshot for {@link #FULL}, the added or changed ids for {@link #DELTA}, null for {@link #CACHED}.
+         */
+        public ForgeRegistry.Snapshot getSnapshot()
+        {
+            return this.snapshot;
+        }
+
+        public Set<ResourceLocation> getRemoved()
+        {
+            return this.removed;
+        }
+
+        @Override
+        public String toString(Class<? extends Enum<?>> side)
+        {
+            return super.toString(side) + ":" + (mode == CACHED ? "cached" : (mode == DELTA ? "delta of " : "") + snapshot.ids.size() + " mappings");
+        }
+    }
     public static class HandshakeAck extends FMLHandshakeMessage {
         int phase;
         public HandshakeAck() {}
@@ -22,11 +22,15 @@ package net.minecraftforge.fml.common.network.handshake;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.function.Consumer;
 
+import com.google.common.hash.HashCode;
+
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.fml.common.FMLLog;
 import net.minecraftforge.fml.common.Loader;
@@ -83,15 +87,27 @@ enum FMLHandshakeServerState implements IHandshakeState<FMLHandshakeServerState>
         @Override
         public void accept(ChannelHandlerContext ctx, FMLHandshakeMessage msg, Consumer<? super FMLHandshakeServerState> cons)
         {
+            // Cache aware clients tell us which registry snapshots they have before acknowledging
+            if (msg instanceof FMLHandshakeMessage.RegistryCacheHashes)
+            {
+                ctx.channel().attr(NetworkDispatcher.FML_REGISTRY_CACHE_HASHES).set(((FMLHandshakeMessage.RegistryCacheHashes)msg).getHashes());
+                return;
+            }
             cons.accept(COMPLETE);
             if (!ctx.channel().attr(NetworkDispatcher.IS_LOCAL).get())
             {
+                Map<ResourceLocation, List<HashCode>> cached = ctx.channel().attr(NetworkDispatcher.FML_REGISTRY_CACHE_HASHES).getAndSet(null);
                 Map<ResourceLocation, ForgeRegistry.Snapshot> snapshot = RegistryManager.ACTIVE.takeSnapshot(false);
                 Iterator<Map.Entry<ResourceLocation, ForgeRegistry.Snapshot>> itr = snapshot.entrySet().iterator();
                 while (itr.hasNext())
                 {
                     Entry<ResourceLocation, ForgeRegistry.Snapshot> e = itr.next();
-                    ctx.writeAndFlush(new FMLHandshakeMessage.RegistryData(itr.hasNext(), e.getKey(), e.getValue())).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+                    FMLHandshakeMessage data;
+                    if (cached != null)
+                        data = RegistrySnapshotCache.createMessage(itr.hasNext(), e.getKey(), e.getValue(), cached.getOrDefault(e.getKey(), Collections.emptyList()));
+                    else
+                        data = new FMLHandshakeMessage.RegistryData(itr.hasNext(), e.getKey(), e.getValue());
+                    ctx.writeAndFlush(data).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
                 }
             }
             ctx.writeAndFlush(new FMLHandshakeMessage.HandshakeAck(ordinal())).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
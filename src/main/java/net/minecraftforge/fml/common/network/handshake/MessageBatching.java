@@ -0,0 +1,88 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.network.handshake;
+
+import java.util.Set;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+
+import com.google.common.collect.Sets;
+
+/**
+ * The per-tick batching of mod channel messages shared by {@link net.minecraftforge.fml.common.network.simpleimpl.SimpleNetworkWrapper}
+ * and {@link net.minecraftforge.fml.common.network.FMLEventChannel}. The batch of each connection is held by its {@link NetworkDispatcher},
+ * this tracks which channels are batched and which connections have a batch waiting to be sent.
+ */
+public final class MessageBatching
+{
+    private static final Set<String> batchedChannels = Sets.newConcurrentHashSet();
+    private static final Set<NetworkDispatcher> pending = Sets.newConcurrentHashSet();
+
+    private MessageBatching(){}
+
+    /**
+     * Enables or disables batching for a channel. Messages of batched channels that are sent to a client
+     * are gathered during the server tick and sent as one {@link NetworkDispatcher#BATCH_CHANNEL} packet at the end of the tick,
+     * or when {@link #flush(EntityPlayerMP)} is called. Clients that did not register the batch channel get every message directly.
+     */
+    public static void setBatched(String channel, boolean batched)
+    {
+        if (batched)
+            batchedChannels.add(channel);
+        else
+            batchedChannels.remove(channel);
+    }
+
+    static boolean isBatched(String channel)
+    {
+        return batchedChannels.contains(channel);
+    }
+
+    /**
+     * Sends the messages batched for the player right away, including those of every channel.
+     */
+    public static void flush(EntityPlayerMP player)
+    {
+        NetworkDispatcher dispatcher = player.connection.netManager.channel().attr(NetworkDispatcher.FML_DISPATCHER).get();
+        if (dispatcher != null)
+            dispatcher.flushBatch();
+    }
+
+    /**
+     * Sends the messages batched for all connections, called at the end of each server tick.
+     */
+    public static void flushAll()
+    {
+        for (NetworkDispatcher dispatcher : pending)
+        {
+            dispatcher.flushBatch();
+        }
+    }
+
+    static void addPending(NetworkDispatcher dispatcher)
+    {
+        pending.add(dispatcher);
+    }
+
+    static void removePending(NetworkDispatcher dispatcher)
+    {
+        pending.remove(dispatcher);
+    }
+}
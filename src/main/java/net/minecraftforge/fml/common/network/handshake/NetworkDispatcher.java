@@ -19,6 +19,8 @@
 
 package net.minecraftforge.fml.common.network.handshake;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandler;
@@ -37,6 +39,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.EnumConnectionState;
@@ -45,7 +49,6 @@ import net.minecraft.network.NetHandlerPlayServer;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.Packet;
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.network.play.INetHandlerPlayClient;
 import net.minecraft.network.play.client.CPacketCustomPayload;
 import net.minecraft.network.play.server.SPacketJoinGame;
 import net.minecraft.network.play.server.SPacketCustomPayload;
@@ -60,6 +63,7 @@ import net.minecraftforge.fml.common.FMLLog;
 import net.minecraftforge.fml.common.network.FMLNetworkEvent;
 import net.minecraftforge.fml.common.network.FMLNetworkException;
 import net.minecraftforge.fml.common.network.FMLOutboundHandler;
+import net.minecraftforge.fml.common.network.IMultiPartStreamHandler;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.PacketLoggingHandler;
 import net.minecraftforge.fml.common.network.internal.FMLMessage;
@@ -68,6 +72,9 @@ import net.minecraftforge.fml.common.network.internal.FMLProxyPacket;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.registries.ForgeRegistry;
 
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+
 // TODO build test suites to validate the behaviour of this stuff and make it less annoyingly magical
 public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> implements ChannelOutboundHandler {
     private static boolean DEBUG_HANDSHAKE = Boolean.parseBoolean(System.getProperty("fml.debugNetworkHandshake", "false"));
@@ -98,9 +105,18 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
         return net;
     }
 
+    private static final boolean SHARED_BROADCAST_ENCODING = Boolean.parseBoolean(System.getProperty("fml.sharedBroadcastEncoding", "false"));
+    /** The channel batched messages are sent on, clients announce that they can read it in their REGISTER */
+    public static final String BATCH_CHANNEL = "FML|BT";
+    private static final int MAX_BATCH_BYTES = 0x8000;
+    /** The most bytes of FML|MP parts a connection holds while reassembling a packet, exceeding it closes the connection */
+    private static final int MULTIPART_MEMORY_LIMIT = Integer.getInteger("fml.multipartMemoryLimit", 32 << 20);
+    private static final Map<String, IMultiPartStreamHandler> multiPartStreams = Maps.newConcurrentMap();
     public static final AttributeKey<NetworkDispatcher> FML_DISPATCHER = AttributeKey.valueOf("fml:dispatcher");
     public static final AttributeKey<Boolean> IS_LOCAL = AttributeKey.valueOf("fml:isLocal");
     public static final AttributeKey<Map<ResourceLocation, ForgeRegistry.Snapshot>> FML_GAMEDATA_SNAPSHOT = AttributeKey.valueOf("fml:gameDataSnapshot");
+    public static final AttributeKey<Byte> FML_REMOTE_PROTOCOL = AttributeKey.valueOf("fml:remoteProtocol");
+    public static final AttributeKey<Map<ResourceLocation, List<HashCode>>> FML_REGISTRY_CACHE_HASHES = AttributeKey.valueOf("fml:registryCacheHashes");
     public final NetworkManager manager;
     private final PlayerList scm;
     private EntityPlayerMP player;
@@ -108,6 +124,8 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
     private ConnectionType connectionType;
     private final Side side;
     private final EmbeddedChannel handshakeChannel;
+    private volatile boolean remoteBatching = false;
+    private PacketBuffer batch;
     private NetHandlerPlayServer serverHandler;
     private INetHandler netHandler;
     private Map<String,String> modList = Collections.emptyMap();
@@ -344,10 +362,23 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
     }
 
     private MultiPartCustomPayload multipart = null;
+    private int multipartBytes = 0;
+
+    private void abortMultipart()
+    {
+        if (multipart != null)
+            multipart.abort();
+        multipart = null;
+        multipartBytes = 0;
+    }
 
     private boolean handleClientSideCustomPacket(SPacketCustomPayload msg, ChannelHandlerContext context)
     {
         String channelName = msg.getChannelName();
+        if (BATCH_CHANNEL.equals(channelName))
+        {
+            return handleBatch(msg, context);
+        }
         if ("FML|MP".equals(channelName))
         {
             boolean result = handleMultiPartCustomPacket(msg, context);
@@ -402,13 +433,22 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
         catch (IOException e)
         {
             this.kickWithMessage(e.getMessage());
-            multipart = null;
+            abortMultipart();
             return true;
         }
         if (multipart.isComplete())
         {
-            boolean result = handleClientSideCustomPacket(multipart, context);
+            MultiPartCustomPayload complete = multipart;
             multipart = null;
+            multipartBytes = 0;
+            if (complete.stream != null)
+            {
+                complete.stream.onComplete(this);
+                return true;
+            }
+            boolean result = handleClientSideCustomPacket(complete, context);
+            if (!result)
+                complete.getBufferData().release();
             return result;
         }
         else
@@ -458,11 +498,126 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
 
     public void sendProxy(FMLProxyPacket msg)
     {
+        if (tryBatch(msg))
+            return;
         if (!manager.isChannelOpen())
             msg = msg.copy();
         manager.sendPacket(msg);
     }
 
+    /**
+     * Sends a packet that is sent to several connections at once. With {@code fml.sharedBroadcastEncoding} enabled,
+     * the packet is serialized once by {@link FMLProxyPacket#toS3FBytes()} and {@link #write} hands that to remote
+     * connections in the play state, so only compression and encryption still happen per connection.
+     * The packet still goes through {@link NetworkManager#sendPacket}, so it is queued and ordered like any other.
+     */
+    public void sendProxyBroadcast(FMLProxyPacket msg) throws IOException
+    {
+        if (tryBatch(msg))
+            return;
+        if (SHARED_BROADCAST_ENCODING && side == Side.SERVER && !manager.isLocalChannel())
+            msg.toS3FBytes();
+        sendProxy(msg);
+    }
+
+    /**
+     * Sets the handler that receives FML|MP packets of the channel part by part, instead of reassembling them.
+     * Streamed packets do not count against the multipart memory limit.
+     *
+     * @param handler The handler, or null to reassemble packets of the channel again
+     */
+    public static void setMultiPartStreamHandler(String channel, @Nullable IMultiPartStreamHandler handler)
+    {
+        if (handler != null)
+            multiPartStreams.put(channel, handler);
+        else
+            multiPartStreams.remove(channel);
+    }
+
+    void setRemoteBatching(boolean remoteBatching)
+    {
+        this.remoteBatching = remoteBatching;
+    }
+
+    private boolean tryBatch(FMLProxyPacket msg)
+    {
+        if (!remoteBatching || side != Side.SERVER || !MessageBatching.isBatched(msg.channel()) || !manager.isChannelOpen() || manager.isLocalChannel())
+            return false;
+
+        int length = msg.payload().readableBytes();
+        synchronized (this)
+        {
+            if (length > MAX_BATCH_BYTES)
+            {
+                // Too large to batch, send what is batched first to keep the order
+                flushBatch();
+                return false;
+            }
+            if (batch != null && batch.writerIndex() + length + msg.channel().length() * 3 + 10 > MAX_BATCH_BYTES)
+            {
+                flushBatch();
+            }
+            if (batch == null)
+            {
+                batch = new PacketBuffer(Unpooled.buffer());
+                MessageBatching.addPending(this);
+            }
+            batch.writeString(msg.channel());
+            batch.writeVarInt(length);
+            batch.writeBytes(msg.payload(), msg.payload().readerIndex(), length);
+        }
+        if (msg.isPooled())
+            msg.payload().release();
+        return true;
+    }
+
+    /**
+     * Sends the messages batched for this connection right away, see {@link MessageBatching}.
+     */
+    public synchronized void flushBatch()
+    {
+        MessageBatching.removePending(this);
+        if (batch == null)
+            return;
+        PacketBuffer data = batch;
+        batch = null;
+        manager.sendPacket(new SPacketCustomPayload(BATCH_CHANNEL, data));
+    }
+
+    // The connection is gone, nothing batched can be sent anymore
+    private synchronized void dropBatch()
+    {
+        MessageBatching.removePending(this);
+        batch = null;
+    }
+
+    private boolean handleBatch(SPacketCustomPayload msg, ChannelHandlerContext context)
+    {
+        PacketBuffer data = msg.getBufferData();
+        try
+        {
+            while (data.isReadable())
+            {
+                String channel = data.readString(20);
+                int length = data.readVarInt();
+                // Each message holds its own reference, as handlers release their payload
+                PacketBuffer payload = new PacketBuffer(data.retainedSlice(data.readerIndex(), length));
+                data.skipBytes(length);
+                SPacketCustomPayload packet = new SPacketCustomPayload(channel, payload);
+                // Pass unclaimed messages on to the vanilla handler, like unbatched ones
+                if (!handleClientSideCustomPacket(packet, context))
+                {
+                    context.fireChannelRead(packet);
+                }
+            }
+        }
+        finally
+        {
+            data.release();
+        }
+        return true;
+    }
+
     public void rejectHandshake(String result)
     {
         kickWithMessage(result);
@@ -528,21 +683,43 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
     {
         if (msg instanceof FMLProxyPacket)
         {
-            if (side == Side.CLIENT)
+            FMLProxyPacket proxy = (FMLProxyPacket) msg;
+            boolean local = manager.isLocalChannel();
+            ByteBuf encoded = side == Side.SERVER && !local && ctx.channel().attr(NetworkManager.PROTOCOL_ATTRIBUTE_KEY).get() == EnumConnectionState.PLAY ? proxy.getEncodedS3F() : null;
+            if (encoded != null)
+            {
+                // Serialized once for a broadcast, the encoder passes the bytes on as they are
+                if (proxy.isPooled())
+                    proxy.payload().release();
+                ctx.write(encoded.retainedDuplicate(), promise);
+                return;
+            }
+            List<? extends Packet<?>> parts;
+            try
             {
                 //Client to server large packets are not supported to prevent client being bad.
-                ctx.write(((FMLProxyPacket) msg).toC17Packet(), promise);
+                // Parts of remote packets do not need their own reference, the payload is kept until the last part was written
+                parts = side == Side.CLIENT ? Collections.singletonList(proxy.toC17Packet()) : proxy.toS3FPackets(local);
             }
-            else
+            catch (IOException | RuntimeException e)
             {
-                List<Packet<INetHandlerPlayClient>> parts = ((FMLProxyPacket)msg).toS3FPackets();
-                int sizeMinusOne = parts.size() - 1;
-                for (int i = 0; i < sizeMinusOne; i++)
-                {
-                    ctx.write(parts.get(i), ctx.voidPromise());
-                }
-                ctx.write(parts.get(sizeMinusOne), promise);
+                if (proxy.isPooled())
+                    proxy.payload().release();
+                throw e;
+            }
+            // Local connections hand the payload to the receiver, which releases it
+            if (proxy.isPooled() && !local)
+            {
+                promise = promise.unvoid();
+                promise.addListener(future -> proxy.payload().release());
+            }
+
+            int sizeMinusOne = parts.size() - 1;
+            for (int i = 0; i < sizeMinusOne; i++)
+            {
+                ctx.write(parts.get(i), ctx.voidPromise());
             }
+            ctx.write(parts.get(sizeMinusOne), promise);
         }
         else
         {
@@ -604,10 +781,19 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
         super.exceptionCaught(ctx, cause);
     }
 
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception
+    {
+        abortMultipart();
+        dropBatch();
+        super.channelInactive(ctx);
+    }
+
     // if we add any attributes, we should force removal of them here so that
     //they do not hold references to the world and causes it to leak.
     private void cleanAttributes(ChannelHandlerContext ctx)
     {
+        abortMultipart();
         ctx.channel().attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(null);
         ctx.channel().attr(NetworkRegistry.NET_HANDLER).set(null);
         ctx.channel().attr(NetworkDispatcher.FML_DISPATCHER).set(null);
@@ -628,8 +814,10 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
     private class MultiPartCustomPayload extends SPacketCustomPayload
     {
         private String channel;
-        private byte[] data;
+        private CompositeByteBuf data;
         private PacketBuffer data_buf = null;
+        private IMultiPartStreamHandler stream;
+        private int length;
         private int part_count = 0;
         private int part_expected = 0;
         private int offset = 0;
@@ -638,13 +826,26 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
         {
             channel = preamble.readString(20);
             part_count = preamble.readUnsignedByte();
-            int length = preamble.readInt();
+            length = preamble.readInt();
             if (length <= 0 || length >= FMLProxyPacket.MAX_LENGTH)
             {
                 throw new IOException("The received FML MultiPart packet outside of valid length bounds, Max: " + FMLProxyPacket.MAX_LENGTH + ", Received: " + length);
             }
-            data = new byte[length];
-            data_buf = new PacketBuffer(Unpooled.wrappedBuffer(data));
+            stream = multiPartStreams.get(channel);
+            if (stream != null)
+            {
+                stream.onStart(NetworkDispatcher.this, length);
+            }
+            else if (length > MULTIPART_MEMORY_LIMIT)
+            {
+                throw new IOException("The received FML MultiPart packet is larger than the limit of " + MULTIPART_MEMORY_LIMIT + " bytes, Received: " + length);
+            }
+            else
+            {
+                // Keep the parts as they are instead of copying them into one array
+                data = Unpooled.compositeBuffer(part_count);
+                data_buf = new PacketBuffer(data);
+            }
         }
 
         public void processPart(PacketBuffer input) throws IOException
@@ -655,7 +856,23 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
                 throw new IOException("Received FML MultiPart packet out of order, Expected " + part_expected + " Got " + part);
             }
             int len = input.readableBytes();
-            input.readBytes(data, offset, len);
+            if (offset + len > length)
+            {
+                throw new IOException("Received FML MultiPart packet larger than announced, Expected " + length + " Got " + (offset + len));
+            }
+            if (stream != null)
+            {
+                stream.onPart(NetworkDispatcher.this, input, offset);
+            }
+            else
+            {
+                if (multipartBytes + len > MULTIPART_MEMORY_LIMIT)
+                {
+                    throw new IOException("The received FML MultiPart packets exceed the limit of " + MULTIPART_MEMORY_LIMIT + " bytes");
+                }
+                multipartBytes += len;
+                data.addComponent(true, input.retainedSlice());
+            }
             part_expected++;
             offset += len;
         }
@@ -665,6 +882,14 @@ public class NetworkDispatcher extends SimpleChannelInboundHandler<Packet<?>> im
             return part_expected == part_count;
         }
 
+        public void abort()
+        {
+            if (stream != null)
+                stream.onAbort(NetworkDispatcher.this);
+            else if (data != null)
+                data.release();
+        }
+
         @Override
         public String getChannelName() // getChannel
         {
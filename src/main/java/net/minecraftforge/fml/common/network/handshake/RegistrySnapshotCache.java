@@ -0,0 +1,503 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.network.handshake;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.fml.relauncher.FMLInjectionData;
+import net.minecraftforge.registries.ForgeRegistry;
+import net.minecraftforge.registries.RegistryManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Content addressed store of the registry snapshots exchanged during the handshake.
+ *
+ * The client keeps every snapshot it receives, keyed by a hash of the synced content, and offers the
+ * hashes it has to servers that understand them. The server keeps its own snapshots in the same layout,
+ * so it can answer with nothing when the client already has the current snapshot, or with a delta against
+ * an older one the client still has. Files live in {@code registrycache/<domain>/<path>/<hash>.bin}
+ * in the game directory, only the most recently used {@link #MAX_PER_REGISTRY} per registry are kept.
+ *
+ * Enabled on the client with -Dfml.registrySnapshotCache=true, servers always answer cache aware clients.
+ * Only names of registries that exist locally are ever turned into paths, the name comes from the other side.
+ * The server keeps the snapshots it knows about in memory and only touches the disk when the content changes.
+ */
+final class RegistrySnapshotCache
+{
+    static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fml.registrySnapshotCache", "false"));
+    static final boolean COMPRESS_NAMES = Boolean.parseBoolean(System.getProperty("fml.registryNameCompression", "true"));
+    static final int HASH_BYTES = 16;
+    static final int MAX_PER_REGISTRY = 4;
+    private static final File ROOT = new File((File) FMLInjectionData.data()[6], "registrycache");
+    private static final Pattern SAFE_NAME = Pattern.compile("[a-z0-9_.-]+");
+    private static final Pattern SAFE_PATH = Pattern.compile("[a-z0-9_./-]+");
+    // Server side: the most recently used snapshots per registry, the first one is the current one
+    private static final Map<ResourceLocation, LinkedHashMap<HashCode, ForgeRegistry.Snapshot>> KNOWN = Maps.newHashMap();
+
+    private RegistrySnapshotCache(){}
+
+    /**
+     * Hashes the parts of the snapshot that are synced to clients, independent of map iteration order.
+     */
+    static HashCode hash(ForgeRegistry.Snapshot snapshot)
+    {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        TreeMap<String, Integer> ids = Maps.newTreeMap();
+        snapshot.ids.forEach((k, v) -> ids.put(k.toString(), v));
+        ids.forEach((k, v) -> hasher.putString(k, StandardCharsets.UTF_8).putInt(v));
+        hasher.putInt(-1);
+        for (String name : sortedNames(snapshot.dummied))
+        {
+            hasher.putString(name, StandardCharsets.UTF_8).putByte((byte)0);
+        }
+        hasher.putInt(-1);
+        TreeMap<String, String> overrides = Maps.newTreeMap();
+        snapshot.overrides.forEach((k, v) -> overrides.put(k.toString(), v));
+        overrides.forEach((k, v) -> hasher.putString(k, StandardCharsets.UTF_8).putByte((byte)0).putString(v, StandardCharsets.UTF_8).putByte((byte)0));
+        return hasher.hash();
+    }
+
+    /**
+     * Client side: the hashes of the snapshots we have stored, most recently used first.
+     */
+    static Map<ResourceLocation, List<HashCode>> listHashes()
+    {
+        Map<ResourceLocation, List<HashCode>> ret = Maps.newHashMap();
+        File[] domains = ROOT.listFiles(File::isDirectory);
+        if (domains == null)
+            return ret;
+        for (File domain : domains)
+        {
+            File[] paths = domain.listFiles(File::isDirectory);
+            if (paths == null)
+                continue;
+            for (File path : paths)
+            {
+                List<HashCode> hashes = listHashes(path);
+                if (hashes.isEmpty())
+                    continue;
+                ret.put(new ResourceLocation(domain.getName(), path.getName().replace('$', '/')), hashes);
+            }
+        }
+        return ret;
+    }
+
+    private static List<HashCode> listHashes(File dir)
+    {
+        List<HashCode> hashes = Lists.newArrayList();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".bin"));
+        if (files == null)
+            return hashes;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+        for (int x = 0; x < files.length && hashes.size() < MAX_PER_REGISTRY; x++)
+        {
+            String name = files[x].getName();
+            try
+            {
+                hashes.add(HashCode.fromString(name.substring(0, name.length() - 4)));
+            }
+            catch (IllegalArgumentException e)
+            {
+                FMLLog.log.debug("Ignoring unexpected file {} in the registry cache", files[x]);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Server side: builds the message for one registry, sending nothing if the client has the snapshot
+     * already, a delta if it has an older snapshot we still know about and the full snapshot otherwise.
+     */
+    static synchronized FMLHandshakeMessage.CachedRegistryData createMessage(boolean hasMore, ResourceLocation name, ForgeRegistry.Snapshot current, List<HashCode> clientHashes)
+    {
+        LinkedHashMap<HashCode, ForgeRegistry.Snapshot> known = getKnown(name);
+        HashCode hash = null;
+        for (Entry<HashCode, ForgeRegistry.Snapshot> e : known.entrySet())
+        {
+            if (sameContent(e.getValue(), current))
+            {
+                hash = e.getKey();
+                break;
+            }
+        }
+        if (hash == null)
+        {
+            hash = hash(current);
+            store(name, hash, current);
+        }
+        // Most recently current last, so the oldest is dropped first
+        known.remove(hash);
+        known.put(hash, current);
+        while (known.size() > MAX_PER_REGISTRY)
+        {
+            known.remove(known.keySet().iterator().next());
+        }
+
+        if (clientHashes.contains(hash))
+        {
+            return new FMLHandshakeMessage.CachedRegistryData(hasMore, name, FMLHandshakeMessage.CachedRegistryData.CACHED, hash, null, null, null);
+        }
+
+        for (HashCode baseHash : clientHashes)
+        {
+            ForgeRegistry.Snapshot base = known.get(baseHash);
+            if (base != null)
+                return createDelta(hasMore, name, hash, baseHash, base, current);
+        }
+
+        return new FMLHandshakeMessage.CachedRegistryData(hasMore, name, FMLHandshakeMessage.CachedRegistryData.FULL, hash, null, current, null);
+    }
+
+    /**
+     * Builds a delta message holding the ids that were added or changed since the base snapshot, and the names
+     * that were removed. Dummies and overrides are small and sent in full.
+     */
+    static FMLHandshakeMessage.CachedRegistryData createDelta(boolean hasMore, ResourceLocation name, HashCode hash, HashCode baseHash, ForgeRegistry.Snapshot base, ForgeRegistry.Snapshot current)
+    {
+        ForgeRegistry.Snapshot delta = new ForgeRegistry.Snapshot();
+        for (Entry<ResourceLocation, Integer> e : current.ids.entrySet())
+        {
+            if (!e.getValue().equals(base.ids.get(e.getKey())))
+                delta.ids.put(e.getKey(), e.getValue());
+        }
+        Set<ResourceLocation> removed = Sets.newHashSet(Sets.difference(base.ids.keySet(), current.ids.keySet()));
+        delta.dummied.addAll(current.dummied);
+        delta.overrides.putAll(current.overrides);
+        return new FMLHandshakeMessage.CachedRegistryData(hasMore, name, FMLHandshakeMessage.CachedRegistryData.DELTA, hash, baseHash, delta, removed);
+    }
+
+    /**
+     * Applies a message created by {@link #createDelta} to the base snapshot, returning the full new snapshot.
+     */
+    static ForgeRegistry.Snapshot applyDelta(ForgeRegistry.Snapshot base, FMLHandshakeMessage.CachedRegistryData pkt)
+    {
+        ForgeRegistry.Snapshot entry = new ForgeRegistry.Snapshot();
+        entry.ids.putAll(base.ids);
+        entry.ids.keySet().removeAll(pkt.getRemoved());
+        entry.ids.putAll(pkt.getSnapshot().ids);
+        entry.dummied.addAll(pkt.getSnapshot().dummied);
+        entry.overrides.putAll(pkt.getSnapshot().overrides);
+        return entry;
+    }
+
+    /**
+     * Client side: turns a received message back into the full snapshot, storing it for the next connection.
+     *
+     * @return The snapshot, or null if the cache entry the server referred to is missing or does not match
+     */
+    @Nullable
+    static ForgeRegistry.Snapshot resolve(FMLHandshakeMessage.CachedRegistryData pkt)
+    {
+        ForgeRegistry.Snapshot entry;
+        switch (pkt.getMode())
+        {
+            case FMLHandshakeMessage.CachedRegistryData.CACHED:
+                return load(pkt.getName(), pkt.getHash());
+            case FMLHandshakeMessage.CachedRegistryData.DELTA:
+                ForgeRegistry.Snapshot base = load(pkt.getName(), pkt.getBaseHash());
+                if (base == null)
+                    return null;
+                entry = applyDelta(base, pkt);
+                break;
+            default:
+                entry = pkt.getSnapshot();
+        }
+
+        if (!hash(entry).equals(pkt.getHash()))
+        {
+            FMLLog.log.error("Registry snapshot for {} does not match the hash sent by the server", pkt.getName());
+            return null;
+        }
+        store(pkt.getName(), pkt.getHash(), entry);
+        return entry;
+    }
+
+    /**
+     * Server side: the snapshots we know for this registry, read from disk the first time it is asked for.
+     */
+    private static LinkedHashMap<HashCode, ForgeRegistry.Snapshot> getKnown(ResourceLocation name)
+    {
+        LinkedHashMap<HashCode, ForgeRegistry.Snapshot> known = KNOWN.get(name);
+        if (known == null)
+        {
+            known = new LinkedHashMap<>();
+            List<HashCode> hashes = isValidName(name) ? listHashes(getDirectory(name)) : Lists.newArrayList();
+            for (HashCode hash : Lists.reverse(hashes))
+            {
+                ForgeRegistry.Snapshot snapshot = load(name, hash);
+                if (snapshot != null)
+                    known.put(hash, snapshot);
+            }
+            KNOWN.put(name, known);
+        }
+        return known;
+    }
+
+    private static boolean sameContent(ForgeRegistry.Snapshot a, ForgeRegistry.Snapshot b)
+    {
+        return a.ids.equals(b.ids) && a.dummied.equals(b.dummied) && a.overrides.equals(b.overrides);
+    }
+
+    /**
+     * Only registries we have ourselves get a directory, anything else in the name could escape the cache root.
+     */
+    private static boolean isValidName(ResourceLocation name)
+    {
+        String path = name.getResourcePath();
+        return SAFE_NAME.matcher(name.getResourceDomain()).matches() && !name.getResourceDomain().startsWith(".") &&
+               SAFE_PATH.matcher(path).matches() && !path.startsWith(".") && !path.contains("/.") &&
+               RegistryManager.ACTIVE.getRegistry(name) != null;
+    }
+
+    @Nullable
+    static ForgeRegistry.Snapshot load(ResourceLocation name, HashCode hash)
+    {
+        if (!isValidName(name))
+        {
+            FMLLog.log.warn("Refusing to read the registry cache for unknown registry {}", name);
+            return null;
+        }
+        File file = getFile(name, hash);
+        if (!file.isFile())
+            return null;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file.toPath())))
+        {
+            ByteBuf buf = Unpooled.wrappedBuffer(ByteStreams.toByteArray(in));
+            ForgeRegistry.Snapshot snapshot = readSnapshot(buf, true);
+            if (!hash(snapshot).equals(hash))
+            {
+                FMLLog.log.warn("Discarding corrupt registry cache entry {}", file);
+                file.delete();
+                return null;
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return snapshot;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            FMLLog.log.warn("Failed to read registry cache entry {}, discarding it", file, e);
+            file.delete();
+            return null;
+        }
+    }
+
+    static void store(ResourceLocation name, HashCode hash, ForgeRegistry.Snapshot snapshot)
+    {
+        if (!isValidName(name))
+        {
+            FMLLog.log.warn("Refusing to write the registry cache for unknown registry {}", name);
+            return;
+        }
+        File file = getFile(name, hash);
+        if (file.isFile())
+        {
+            file.setLastModified(System.currentTimeMillis());
+            return;
+        }
+
+        File dir = file.getParentFile();
+        ByteBuf buf = Unpooled.buffer();
+        writeSnapshot(buf, snapshot, true);
+        try
+        {
+            dir.mkdirs();
+            File tmp = File.createTempFile(hash.toString(), ".tmp", dir);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp.toPath())))
+            {
+                buf.readBytes(out, buf.readableBytes());
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            FMLLog.log.warn("Failed to write registry cache entry {}", file, e);
+            return;
+        }
+
+        File[] files = dir.listFiles((d, n) -> n.endsWith(".bin"));
+        if (files != null && files.length > MAX_PER_REGISTRY)
+        {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+            for (int x = MAX_PER_REGISTRY; x < files.length; x++)
+            {
+                files[x].delete();
+            }
+        }
+    }
+
+    private static File getDirectory(ResourceLocation name)
+    {
+        return new File(new File(ROOT, name.getResourceDomain()), name.getResourcePath().replace('/', '$'));
+    }
+
+    private static File getFile(ResourceLocation name, HashCode hash)
+    {
+        return new File(getDirectory(name), hash + ".bin");
+    }
+
+    static void writeSnapshot(ByteBuf buffer, ForgeRegistry.Snapshot snapshot, boolean compressNames)
+    {
+        ByteBufUtils.writeVarInt(buffer, snapshot.ids.size(), 3);
+        if (compressNames)
+        {
+            TreeMap<String, Integer> sorted = Maps.newTreeMap();
+            snapshot.ids.forEach((k, v) -> sorted.put(k.toString(), v));
+            String prev = "";
+            for (Entry<String, Integer> e : sorted.entrySet())
+            {
+                prev = writeName(buffer, prev, e.getKey());
+                ByteBufUtils.writeVarInt(buffer, e.getValue(), 3);
+            }
+        }
+        else
+        {
+            for (Entry<ResourceLocation, Integer> e : snapshot.ids.entrySet())
+            {
+                ByteBufUtils.writeUTF8String(buffer, e.getKey().toString());
+                ByteBufUtils.writeVarInt(buffer, e.getValue(), 3);
+            }
+        }
+
+        writeNames(buffer, snapshot.dummied, compressNames);
+
+        ByteBufUtils.writeVarInt(buffer, snapshot.overrides.size(), 3);
+        for (Entry<ResourceLocation, String> e : snapshot.overrides.entrySet())
+        {
+            ByteBufUtils.writeUTF8String(buffer, e.getKey().toString());
+            ByteBufUtils.writeUTF8String(buffer, e.getValue());
+        }
+    }
+
+    static ForgeRegistry.Snapshot readSnapshot(ByteBuf buffer, boolean compressNames)
+    {
+        ForgeRegistry.Snapshot snapshot = new ForgeRegistry.Snapshot();
+        int length = ByteBufUtils.readVarInt(buffer, 3);
+        String prev = "";
+        for (int x = 0; x < length; x++)
+        {
+            String name = compressNames ? readName(buffer, prev) : ByteBufUtils.readUTF8String(buffer);
+            snapshot.ids.put(new ResourceLocation(name), ByteBufUtils.readVarInt(buffer, 3));
+            prev = name;
+        }
+
+        snapshot.dummied.addAll(readNames(buffer, compressNames));
+
+        length = ByteBufUtils.readVarInt(buffer, 3);
+        for (int x = 0; x < length; x++)
+        {
+            snapshot.overrides.put(new ResourceLocation(ByteBufUtils.readUTF8String(buffer)), ByteBufUtils.readUTF8String(buffer));
+        }
+        return snapshot;
+    }
+
+    static void writeNames(ByteBuf buffer, Collection<ResourceLocation> names, boolean compressNames)
+    {
+        ByteBufUtils.writeVarInt(buffer, names.size(), 3);
+        String prev = "";
+        for (String name : compressNames ? sortedNames(names) : Lists.transform(Lists.newArrayList(names), ResourceLocation::toString))
+        {
+            if (compressNames)
+                prev = writeName(buffer, prev, name);
+            else
+                ByteBufUtils.writeUTF8String(buffer, name);
+        }
+    }
+
+    static Set<ResourceLocation> readNames(ByteBuf buffer, boolean compressNames)
+    {
+        int length = ByteBufUtils.readVarInt(buffer, 3);
+        Set<ResourceLocation> ret = Sets.newHashSetWithExpectedSize(length);
+        String prev = "";
+        for (int x = 0; x < length; x++)
+        {
+            prev = compressNames ? readName(buffer, prev) : ByteBufUtils.readUTF8String(buffer);
+            ret.add(new ResourceLocation(prev));
+        }
+        return ret;
+    }
+
+    private static TreeSet<String> sortedNames(Collection<ResourceLocation> names)
+    {
+        TreeSet<String> ret = Sets.newTreeSet();
+        names.forEach(n -> ret.add(n.toString()));
+        return ret;
+    }
+
+    /**
+     * Writes the name as the length of the prefix it shares with the previous name, followed by the rest of it.
+     * Sorted registry names share long prefixes, mostly the domain, so this roughly halves the name bytes.
+     */
+    private static String writeName(ByteBuf buffer, String prev, String name)
+    {
+        int shared = 0;
+        int max = Math.min(prev.length(), name.length());
+        while (shared < max && prev.charAt(shared) == name.charAt(shared))
+            shared++;
+        // Never split a surrogate pair, the suffix would not survive UTF-8 encoding
+        if (shared > 0 && Character.isHighSurrogate(name.charAt(shared - 1)))
+            shared--;
+        ByteBufUtils.writeVarInt(buffer, shared, 3);
+        ByteBufUtils.writeUTF8String(buffer, name.substring(shared));
+        return name;
+    }
+
+    private static String readName(ByteBuf buffer, String prev)
+    {
+        int shared = ByteBufUtils.readVarInt(buffer, 3);
+        if (shared > prev.length())
+            throw new DecoderException("Invalid shared name prefix " + shared + " for " + prev);
+        return prev.substring(0, shared) + ByteBufUtils.readUTF8String(buffer);
+    }
+}
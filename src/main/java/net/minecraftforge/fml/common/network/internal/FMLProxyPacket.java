@@ -26,6 +26,8 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import java.io.IOException;
 import java.util.List;
 
+import net.minecraft.network.EnumConnectionState;
+import net.minecraft.network.EnumPacketDirection;
 import net.minecraft.network.INetHandler;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.Packet;
@@ -52,8 +54,10 @@ public class FMLProxyPacket implements Packet<INetHandler> {
     final String channel;
     private Side target;
     private final PacketBuffer payload;
+    private final boolean pooled;
     private INetHandler netHandler;
     private NetworkDispatcher dispatcher;
+    private ByteBuf encodedS3F;
     private static Multiset<String> badPackets = ConcurrentHashMultiset.create();
     private static int packetCountWarning = Integer.parseInt(System.getProperty("fml.badPacketCounter", "100"));
 
@@ -70,9 +74,18 @@ public class FMLProxyPacket implements Packet<INetHandler> {
     }
 
     public FMLProxyPacket(PacketBuffer payload, String channel)
+    {
+        this(payload, channel, false);
+    }
+
+    /**
+     * @param pooled If the payload is a pooled buffer, see {@link #isPooled()}
+     */
+    public FMLProxyPacket(PacketBuffer payload, String channel, boolean pooled)
     {
         this.channel = channel;
         this.payload = payload;
+        this.pooled = pooled;
     }
     @Override
     public void readPacketData(PacketBuffer packetbuffer) throws IOException
@@ -137,6 +150,29 @@ public class FMLProxyPacket implements Packet<INetHandler> {
     {
         return netHandler;
     }
+
+    /**
+     * Each send of a packet with a pooled payload consumes one reference of the payload. The {@link NetworkDispatcher}
+     * releases it once the packet was written to a remote connection, or copied into a batch or shared encoding.
+     * On local connections the packet is handed to the receiver, which releases the payload once it was handled.
+     */
+    public boolean isPooled()
+    {
+        return pooled;
+    }
+
+    /**
+     * @return A packet with a copy of the payload that is not pooled, the pooled payload of this packet is released
+     */
+    public FMLProxyPacket toUnpooled()
+    {
+        FMLProxyPacket pkt = new FMLProxyPacket(new PacketBuffer(Unpooled.copiedBuffer(payload)), channel);
+        pkt.dispatcher = dispatcher;
+        pkt.netHandler = netHandler;
+        pkt.target = target;
+        payload.release();
+        return pkt;
+    }
     public Packet<INetHandlerPlayServer> toC17Packet()
     {
         return new CPacketCustomPayload(channel, payload);
@@ -146,17 +182,26 @@ public class FMLProxyPacket implements Packet<INetHandler> {
     // FIXME int overflow
     public static final int MAX_LENGTH = PART_SIZE * 255;
     public List<Packet<INetHandlerPlayClient>> toS3FPackets() throws IOException
+    {
+        return toS3FPackets(true);
+    }
+
+    /**
+     * @param retainParts If each FML|MP part holds its own reference of the payload, as the receiver of a local connection
+     *                    releases them. Otherwise the payload has to stay alive until the parts were written.
+     */
+    public List<Packet<INetHandlerPlayClient>> toS3FPackets(boolean retainParts) throws IOException
     {
         List<Packet<INetHandlerPlayClient>> ret = Lists.newArrayList();
-        byte[] data = payload.array();
+        int length = payload.readableBytes();
 
-        if (data.length < PART_SIZE)
+        if (length < PART_SIZE)
         {
             ret.add(new SPacketCustomPayload(channel, new PacketBuffer(payload.duplicate())));
         }
         else
         {
-            int parts = (int)Math.ceil(data.length / (double)(PART_SIZE - 1)); //We add a byte header so -1
+            int parts = (int)Math.ceil(length / (double)(PART_SIZE - 1)); //We add a byte header so -1
             if (parts > 255)
             {
                 throw new IllegalArgumentException("Payload may not be larger than " + MAX_LENGTH + " bytes");
@@ -164,23 +209,63 @@ public class FMLProxyPacket implements Packet<INetHandler> {
             PacketBuffer preamble = new PacketBuffer(Unpooled.buffer());
             preamble.writeString(channel);
             preamble.writeByte(parts);
-            preamble.writeInt(data.length);
+            preamble.writeInt(length);
             ret.add(new SPacketCustomPayload("FML|MP", preamble));
 
-            int offset = 0;
+            // Parts reference the payload instead of copying it
+            int offset = payload.readerIndex();
             for (int x = 0; x < parts; x++)
             {
-                int length = Math.min(PART_SIZE, data.length - offset + 1);
-                byte[] tmp = new byte[length];
-                tmp[0] = (byte)(x & 0xFF);
-                System.arraycopy(data, offset, tmp, 1, tmp.length - 1);
-                offset += tmp.length - 1;
-                ret.add(new SPacketCustomPayload("FML|MP", new PacketBuffer(Unpooled.wrappedBuffer(tmp))));
+                int partLength = Math.min(PART_SIZE - 1, payload.readerIndex() + length - offset);
+                ByteBuf header = Unpooled.buffer(1, 1).writeByte(x & 0xFF);
+                ret.add(new SPacketCustomPayload("FML|MP", new PacketBuffer(Unpooled.wrappedBuffer(header, retainParts ? payload.retainedSlice(offset, partLength) : payload.slice(offset, partLength)))));
+                offset += partLength;
             }
         }
         return ret;
     }
 
+    /**
+     * Serializes this packet once as a clientbound play packet, including the packet id, but before
+     * compression and framing. The result is shared by all callers and must not be modified, write
+     * a {@link ByteBuf#retainedDuplicate()} of it to each connection.
+     *
+     * @return The serialized packet, or null if the payload is too large and has to be split by {@link #toS3FPackets()}
+     */
+    @Nullable
+    public ByteBuf toS3FBytes() throws IOException
+    {
+        if (encodedS3F == null)
+        {
+            if (payload.readableBytes() >= PART_SIZE)
+                return null;
+
+            SPacketCustomPayload packet = new SPacketCustomPayload(channel, new PacketBuffer(payload.duplicate()));
+            ByteBuf encoded = Unpooled.buffer(payload.readableBytes() + channel.length() + 8);
+            PacketBuffer buffer = new PacketBuffer(encoded);
+            try
+            {
+                buffer.writeVarInt(EnumConnectionState.PLAY.getPacketId(EnumPacketDirection.CLIENTBOUND, packet));
+            }
+            catch (Exception e)
+            {
+                throw new IOException("Unable to determine the id of the custom payload packet", e);
+            }
+            packet.writePacketData(buffer);
+            encodedS3F = encoded.asReadOnly();
+        }
+        return encodedS3F;
+    }
+
+    /**
+     * @return The serialized packet if {@link #toS3FBytes()} was called before, or null
+     */
+    @Nullable
+    public ByteBuf getEncodedS3F()
+    {
+        return encodedS3F;
+    }
+
     public void setTarget(Side target)
     {
         this.target = target;
@@ -209,7 +294,7 @@ public class FMLProxyPacket implements Packet<INetHandler> {
 
     public FMLProxyPacket copy()
     {
-        FMLProxyPacket pkt = new FMLProxyPacket(new PacketBuffer(payload.duplicate()), channel);
+        FMLProxyPacket pkt = new FMLProxyPacket(new PacketBuffer(payload.duplicate()), channel, pooled);
         pkt.dispatcher = dispatcher;
         pkt.netHandler = netHandler;
         pkt.target = target;
@@ -28,6 +28,7 @@ import net.minecraft.util.IThreadListener;
 
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelPipeline;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.network.INetHandler;
 import net.minecraft.network.Packet;
@@ -38,6 +39,7 @@ import net.minecraftforge.fml.common.network.FMLEmbeddedChannel;
 import net.minecraftforge.fml.common.network.FMLOutboundHandler;
 import net.minecraftforge.fml.common.network.NetworkRegistry;
 import net.minecraftforge.fml.common.network.NetworkRegistry.TargetPoint;
+import net.minecraftforge.fml.common.network.handshake.MessageBatching;
 import net.minecraftforge.fml.relauncher.Side;
 
 /**
@@ -110,6 +112,7 @@ import net.minecraftforge.fml.relauncher.Side;
  *
  */
 public class SimpleNetworkWrapper {
+    private final String channelName;
     private EnumMap<Side, FMLEmbeddedChannel> channels;
     private SimpleIndexedCodec packetCodec;
     private static Class<?> defaultChannelPipeline;
@@ -129,6 +132,7 @@ public class SimpleNetworkWrapper {
     }
     public SimpleNetworkWrapper(String channelName)
     {
+        this.channelName = channelName;
         packetCodec = new SimpleIndexedCodec();
         channels = NetworkRegistry.INSTANCE.newChannel(channelName, packetCodec);
     }
@@ -263,6 +267,34 @@ public class SimpleNetworkWrapper {
         channels.get(Side.SERVER).writeAndFlush(message).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
     }
 
+    /**
+     * Send this message to everyone watching the chunk containing the point, the range of the point is ignored.
+     * The {@link IMessageHandler} for this message type should be on the CLIENT side.
+     *
+     * @param message The message to send
+     * @param point The {@link TargetPoint} whose chunk to send to
+     */
+    public void sendToAllTracking(IMessage message, NetworkRegistry.TargetPoint point)
+    {
+        channels.get(Side.SERVER).attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TRACKING_POINT);
+        channels.get(Side.SERVER).attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(point);
+        channels.get(Side.SERVER).writeAndFlush(message).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+    }
+
+    /**
+     * Send this message to everyone tracking the entity, this does not include the entity itself if it is a player.
+     * The {@link IMessageHandler} for this message type should be on the CLIENT side.
+     *
+     * @param message The message to send
+     * @param entity The entity whose trackers to send to
+     */
+    public void sendToAllTracking(IMessage message, Entity entity)
+    {
+        channels.get(Side.SERVER).attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TRACKING_ENTITY);
+        channels.get(Side.SERVER).attr(FMLOutboundHandler.FML_MESSAGETARGETARGS).set(entity);
+        channels.get(Side.SERVER).writeAndFlush(message).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+    }
+
     /**
      * Send this message to everyone within the supplied dimension.
      * The {@link IMessageHandler} for this message type should be on the CLIENT side.
@@ -288,4 +320,26 @@ public class SimpleNetworkWrapper {
         channels.get(Side.CLIENT).attr(FMLOutboundHandler.FML_MESSAGETARGET).set(FMLOutboundHandler.OutboundTarget.TOSERVER);
         channels.get(Side.CLIENT).writeAndFlush(message).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
     }
+
+    /**
+     * Gathers the messages this channel sends to each client during a server tick, and sends them as a single packet
+     * at the end of the tick, in the order they were sent. Use {@link #flush(EntityPlayerMP)} for messages that should
+     * not wait for the end of the tick. Clients running a version of Forge without batching get each message directly.
+     *
+     * @param batched Whether to batch outgoing messages
+     */
+    public void setBatched(boolean batched)
+    {
+        MessageBatching.setBatched(channelName, batched);
+    }
+
+    /**
+     * Sends the messages batched for the player right away, including those of other channels.
+     *
+     * @param player The player to flush
+     */
+    public void flush(EntityPlayerMP player)
+    {
+        MessageBatching.flush(player);
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.World;
+import net.minecraft.world.storage.MapStorage;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.common.WorldWorkerManager;
+import net.minecraftforge.common.util.Constants;
+
+/**
+ * Stores the progress of running {@link ChunkGenWorker}s with the overworld, so they resume after a restart.
+ */
+public class ChunkGenProgress extends WorldSavedData
+{
+    private static final String ID = "forge_chunkgen";
+
+    private final List<ChunkGenWorker> workers = new ArrayList<ChunkGenWorker>();
+    private final List<NBTTagCompound> saved = new ArrayList<NBTTagCompound>();
+
+    public ChunkGenProgress(String name)
+    {
+        super(name);
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound nbt)
+    {
+        saved.clear();
+        NBTTagList list = nbt.getTagList("workers", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < list.tagCount(); i++)
+            saved.add(list.getCompoundTagAt(i));
+    }
+
+    @Override
+    public NBTTagCompound writeToNBT(NBTTagCompound nbt)
+    {
+        NBTTagList list = new NBTTagList();
+        for (NBTTagCompound tag : saved)
+            list.appendTag(tag);
+        for (ChunkGenWorker worker : workers)
+            list.appendTag(worker.writeToNBT(new NBTTagCompound()));
+        nbt.setTag("workers", list);
+        return nbt;
+    }
+
+    @Nullable
+    private static ChunkGenProgress get()
+    {
+        World world = DimensionManager.getWorld(0);
+        if (world == null)
+            return null;
+        MapStorage storage = world.getMapStorage();
+        ChunkGenProgress data = (ChunkGenProgress)storage.getOrLoadData(ChunkGenProgress.class, ID);
+        if (data == null)
+        {
+            data = new ChunkGenProgress(ID);
+            storage.setData(ID, data);
+        }
+        return data;
+    }
+
+    static void update(ChunkGenWorker worker)
+    {
+        ChunkGenProgress data = get();
+        if (data != null)
+        {
+            if (!data.workers.contains(worker))
+                data.workers.add(worker);
+            data.markDirty();
+        }
+    }
+
+    static void remove(ChunkGenWorker worker)
+    {
+        ChunkGenProgress data = get();
+        if (data != null && data.workers.remove(worker))
+            data.markDirty();
+    }
+
+    /**
+     * Restarts the workers that were still running when the server stopped, called once the worlds are loaded.
+     */
+    public static void resume(MinecraftServer server)
+    {
+        ChunkGenProgress data = get();
+        if (data == null || data.saved.isEmpty())
+            return;
+
+        for (NBTTagCompound tag : data.saved)
+        {
+            ChunkGenWorker worker = new ChunkGenWorker(server, tag);
+            if (!worker.hasWork())
+                continue;
+            data.workers.add(worker);
+            server.sendMessage(TextComponentHelper.createComponentTranslation(server, "commands.forge.gen.resume", tag.getInteger("index"), tag.getInteger("total"), tag.getInteger("dim")));
+            WorldWorkerManager.addWorker(worker);
+        }
+        data.saved.clear();
+        data.markDirty();
+    }
+}
@@ -20,63 +20,135 @@ package net.minecraftforge.server.command;
 
 import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+import it.unimi.dsi.fastutil.ints.IntSortedSet;
 import net.minecraft.command.ICommandSender;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.TextComponentBase;
 import net.minecraft.util.text.TextComponentTranslation;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.ChunkProviderServer;
 import net.minecraftforge.common.DimensionManager;
 import net.minecraftforge.common.WorldWorkerManager.IWorker;
+import net.minecraftforge.fml.common.FMLCommonHandler;
 
 public class ChunkGenWorker implements IWorker
 {
+    /** The maximum amount of already generated chunks skipped per {@link #work()} call. */
+    private static final int MAX_SKIPPED = 1024;
+    /** The maximum amount of saved chunks loaded in the background at once, to check if they were populated. */
+    private static final int MAX_VERIFYING = 64;
+
     private final ICommandSender listener;
     protected final BlockPos start;
     protected final int total;
     private final int dim;
-    private final Queue<BlockPos> queue;
     private final int notificationFrequency;
+    private final int chunksPerSecond;
+    private final int tickBudget;
+    private final int maxLoadedChunks;
+    private int index = 0;
     private int lastNotification = 0;
     private int genned = 0;
     private Boolean loadSpawn;
+    private int lastTick = -1;
+    private long tickStart;
+    private long nextChunkTime;
+    // Indices of saved chunks loading in the background, resumed from the lowest if the task is saved meanwhile
+    private final IntSortedSet verifying = new IntRBTreeSet();
 
     public ChunkGenWorker(ICommandSender listener, BlockPos start, int total, int dim, int interval)
+    {
+        this(listener, start, total, dim, interval, 0, 0, 0);
+    }
+
+    /**
+     * @param chunksPerSecond The maximum amount of chunks generated per second, 0 for no limit
+     * @param tickBudget The maximum time in milliseconds spent generating per tick, 0 to use the full time of {@link net.minecraftforge.common.WorldWorkerManager}
+     * @param maxLoadedChunks Generation pauses while the dimension has more chunks loaded, letting unloading and saving catch up. 0 for no limit
+     */
+    public ChunkGenWorker(ICommandSender listener, BlockPos start, int total, int dim, int interval, int chunksPerSecond, int tickBudget, int maxLoadedChunks)
     {
         this.listener = listener;
         this.start = start;
         this.total = total;
         this.dim  = dim;
-        this.queue = buildQueue();
         this.notificationFrequency = interval != -1 ? interval : Math.max(total / 20, 100); //Every 5% or every 100, whichever is more.
+        this.chunksPerSecond = chunksPerSecond;
+        this.tickBudget = tickBudget;
+        this.maxLoadedChunks = maxLoadedChunks;
     }
 
-    protected Queue<BlockPos> buildQueue()
+    /**
+     * Resumes a worker saved with {@link #writeToNBT(NBTTagCompound)}.
+     */
+    public ChunkGenWorker(ICommandSender listener, NBTTagCompound nbt)
     {
-        Queue<BlockPos> ret = new ArrayDeque<BlockPos>();
-        ret.add(start);
-
-        //This *should* spiral outwards, starting on right side, down, left, up, right, but hey we'll see!
-        int radius = 1;
-        while (ret.size() < total)
-        {
-            for (int q = -radius + 1; q <= radius && ret.size() < total; q++)
-                ret.add(start.add(radius, 0, q));
+        this(listener, new BlockPos(nbt.getInteger("x"), 0, nbt.getInteger("z")), nbt.getInteger("total"), nbt.getInteger("dim"), nbt.getInteger("interval"),
+                nbt.getInteger("rate"), nbt.getInteger("budget"), nbt.getInteger("maxLoaded"));
+        this.index = nbt.getInteger("index");
+        this.genned = nbt.getInteger("genned");
+    }
 
-            for (int q = radius - 1; q >= -radius && ret.size() < total; q--)
-                ret.add(start.add(q, 0, radius));
+    public NBTTagCompound writeToNBT(NBTTagCompound nbt)
+    {
+        nbt.setInteger("x", start.getX());
+        nbt.setInteger("z", start.getZ());
+        nbt.setInteger("total", total);
+        nbt.setInteger("dim", dim);
+        nbt.setInteger("interval", notificationFrequency);
+        nbt.setInteger("rate", chunksPerSecond);
+        nbt.setInteger("budget", tickBudget);
+        nbt.setInteger("maxLoaded", maxLoadedChunks);
+        nbt.setInteger("index", verifying.isEmpty() ? index : Math.min(index, verifying.firstInt()));
+        nbt.setInteger("genned", genned);
+        return nbt;
+    }
 
-            for (int q = radius - 1; q >= -radius && ret.size() < total; q--)
-                ret.add(start.add(-radius, 0, q));
+    /**
+     * @deprecated The spiral is computed on the fly by {@link #getPosition(int)}, this is no longer used.
+     */
+    @Deprecated // TODO remove in 1.13
+    protected Queue<BlockPos> buildQueue()
+    {
+        Queue<BlockPos> ret = new ArrayDeque<BlockPos>();
+        for (int i = 0; i < total; i++)
+            ret.add(getPosition(i));
+        return ret;
+    }
 
-            for (int q = -radius + 1; q <= radius && ret.size() < total; q++)
-                ret.add(start.add(q, 0, -radius));
+    /**
+     * Computes the position of the chunk at the index of the spiral around the start,
+     * starting on the right side, then going down, left, up and right.
+     */
+    protected BlockPos getPosition(int index)
+    {
+        if (index == 0)
+            return start;
 
+        // Ring r covers the indices [(2r-1)^2, (2r+1)^2)
+        int radius = (int)((Math.sqrt(index) + 1) / 2);
+        while ((2L * radius + 1) * (2L * radius + 1) <= index)
             radius++;
+        while ((2L * radius - 1) * (2L * radius - 1) > index)
+            radius--;
+
+        int offset = index - (2 * radius - 1) * (2 * radius - 1);
+        int side = offset / (2 * radius);
+        int step = offset % (2 * radius);
+        switch (side)
+        {
+            case 0:  return start.add(radius, 0, -radius + 1 + step);
+            case 1:  return start.add(radius - 1 - step, 0, radius);
+            case 2:  return start.add(-radius, 0, radius - 1 - step);
+            default: return start.add(-radius + 1 + step, 0, -radius);
         }
-        return ret;
     }
 
     @Deprecated // TODO remove in 1.13
@@ -93,15 +165,46 @@ public class ChunkGenWorker implements IWorker
     @Override
     public boolean hasWork()
     {
-        return queue.size() > 0;
+        return index < total || !verifying.isEmpty();
     }
 
     @Override
-    public void work()
+    public boolean doWork()
     {
-        BlockPos next = queue.poll();
+        long now = System.nanoTime();
+        MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+        if (server != null && server.getTickCounter() != lastTick)
+        {
+            lastTick = server.getTickCounter();
+            tickStart = now;
+        }
+
+        if (tickBudget > 0 && now - tickStart >= TimeUnit.MILLISECONDS.toNanos(tickBudget))
+            return false;
+
+        if (chunksPerSecond > 0)
+        {
+            if (now < nextChunkTime)
+                return false;
+            // Allow catching up for at most a second after a stall
+            nextChunkTime = Math.max(nextChunkTime, now - TimeUnit.SECONDS.toNanos(1)) + TimeUnit.SECONDS.toNanos(1) / chunksPerSecond;
+        }
+
+        if (maxLoadedChunks > 0)
+        {
+            WorldServer world = DimensionManager.getWorld(dim);
+            if (world != null && world.getChunkProvider().getLoadedChunkCount() > maxLoadedChunks)
+                return false;
+        }
+
+        work();
+        return true;
+    }
 
-        if (next != null)
+    @Override
+    public void work()
+    {
+        if (index < total)
         {
             WorldServer world = DimensionManager.getWorld(dim);
             if (world == null)
@@ -111,7 +214,8 @@ public class ChunkGenWorker implements IWorker
                 if (world == null)
                 {
                     listener.sendMessage(TextComponentHelper.createComponentTranslation(listener, "commands.forge.gen.dim_fail", dim));
-                    queue.clear();
+                    index = total;
+                    ChunkGenProgress.remove(this);
                     return;
                 }
             }
@@ -122,44 +226,97 @@ public class ChunkGenWorker implements IWorker
                 world.provider.getDimensionType().setLoadSpawn(true);
             }
 
-            if (++lastNotification >= notificationFrequency)
+            // Skip chunks that were saved before along with the chunks needed to populate them, this only checks the
+            // region file headers. If they were populated is checked once they were loaded in the background.
+            BlockPos next = getPosition(index++);
+            for (int skipped = 0; skipped < MAX_SKIPPED && index < total && skipOrVerify(world, index - 1, next.getX(), next.getZ()); skipped++)
             {
-                listener.sendMessage(TextComponentHelper.createComponentTranslation(listener, "commands.forge.gen.progress", total - queue.size(), total));
-                lastNotification = 0;
+                next = getPosition(index++);
             }
 
-            int x = next.getX();
-            int z = next.getZ();
-
-            Chunk target = world.getChunkFromChunkCoords(x, z);
-            Chunk[] chunks = { target };
-
-            if (!target.isTerrainPopulated())
+            if (index - lastNotification >= notificationFrequency)
             {
-                // In order for a chunk to populate, The chunks around its bottom right corner need to be loaded.
-                // So lets load those chunks, but this needs to be done in a certain order to make this trigger.
-                // So this does load more chunks then it should, and is a hack, but lets go!.
-                chunks = new Chunk[] {
-                    target,
-                    world.getChunkFromChunkCoords(x + 1, z),
-                    world.getChunkFromChunkCoords(x + 1, z + 1),
-                    world.getChunkFromChunkCoords(x,     z + 1),
-                };
-                genned++;
+                listener.sendMessage(TextComponentHelper.createComponentTranslation(listener, "commands.forge.gen.progress", index, total));
+                lastNotification = index;
             }
 
-            for (Chunk chunk : chunks) //Now lets unload them. Note: Saving is done off thread so there may be cache hits, but this should still unload everything.
-            {
-                PlayerChunkMapEntry watchers = world.getPlayerChunkMap().getEntry(chunk.x, chunk.z);
-                if (watchers == null) //If there are no players watching this, this will be null, so we can unload.
-                    world.getChunkProvider().queueUnload(chunk);
-            }
+            generate(world, world.getChunkFromChunkCoords(next.getX(), next.getZ()));
+            ChunkGenProgress.update(this);
         }
 
-        if (queue.size() == 0)
+        if (index >= total && verifying.isEmpty())
         {
             listener.sendMessage(TextComponentHelper.createComponentTranslation(listener, "commands.forge.gen.complete", genned, total, dim));
-            DimensionManager.getProviderType(dim).setLoadSpawn(loadSpawn);
+            if (loadSpawn != null)
+                DimensionManager.getProviderType(dim).setLoadSpawn(loadSpawn);
+            ChunkGenProgress.remove(this);
+        }
+    }
+
+    /**
+     * Populates the chunk if it was not yet, then unloads it and the chunks loaded for that if nobody watches them.
+     */
+    private void generate(WorldServer world, Chunk target)
+    {
+        Chunk[] chunks = { target };
+
+        if (!target.isTerrainPopulated())
+        {
+            int x = target.x;
+            int z = target.z;
+            // In order for a chunk to populate, The chunks around its bottom right corner need to be loaded.
+            // So lets load those chunks, but this needs to be done in a certain order to make this trigger.
+            // So this does load more chunks then it should, and is a hack, but lets go!.
+            chunks = new Chunk[] {
+                target,
+                world.getChunkFromChunkCoords(x + 1, z),
+                world.getChunkFromChunkCoords(x + 1, z + 1),
+                world.getChunkFromChunkCoords(x,     z + 1),
+            };
+            genned++;
+        }
+
+        for (Chunk chunk : chunks) //Now lets unload them. Note: Saving is done off thread so there may be cache hits, but this should still unload everything.
+        {
+            PlayerChunkMapEntry watchers = world.getPlayerChunkMap().getEntry(chunk.x, chunk.z);
+            if (watchers == null) //If there are no players watching this, this will be null, so we can unload.
+                world.getChunkProvider().queueUnload(chunk);
         }
     }
+
+    /**
+     * Checks the region file headers for the chunk and the chunks needed to populate it. If they are all saved the chunk
+     * is loaded in the background and populated once it is loaded, if it was not populated before.
+     *
+     * @return True if the chunk was dealt with, false if it has to be generated now
+     */
+    private boolean skipOrVerify(WorldServer world, int index, int x, int z)
+    {
+        ChunkProviderServer provider = world.getChunkProvider();
+        if (!provider.isChunkGeneratedAt(x, z) || !provider.isChunkGeneratedAt(x + 1, z) ||
+            !provider.isChunkGeneratedAt(x + 1, z + 1) || !provider.isChunkGeneratedAt(x, z + 1))
+            return false;
+
+        Chunk loaded = provider.getLoadedChunk(x, z);
+        if (loaded != null)
+            return loaded.isTerrainPopulated();
+        if (verifying.size() >= MAX_VERIFYING)
+            return false;
+
+        verifying.add(index);
+        provider.loadChunk(x, z, () ->
+        {
+            verifying.remove(index);
+            Chunk chunk = world.getChunkProvider().getLoadedChunk(x, z);
+            if (chunk != null)
+                generate(world, chunk);
+        });
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ChunkGenWorker{dim=" + dim + ", progress=" + index + "/" + total + ", generated=" + genned + "}";
+    }
 }
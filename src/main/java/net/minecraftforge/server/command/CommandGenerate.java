@@ -59,7 +59,7 @@ class CommandGenerate extends CommandBase
     @Override
     public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
     {
-        // x y z chunkCount [dim] [interval]
+        // x y z chunkCount [dim] [interval] [chunksPerSecond] [tickBudget] [maxLoadedChunks]
         if (args.length < 4)
         {
             throw new WrongUsageException("commands.forge.gen.usage");
@@ -69,9 +69,12 @@ class CommandGenerate extends CommandBase
         int count = parseInt(args[3], 10);
         int dim = args.length >= 5 ? parseInt(args[4]) : sender.getEntityWorld().provider.getDimension();
         int interval = args.length >= 6 ? parseInt(args[5]) : -1;
+        int rate = args.length >= 7 ? parseInt(args[6], 0) : 0;
+        int budget = args.length >= 8 ? parseInt(args[7], 0, 50) : 0;
+        int maxLoaded = args.length >= 9 ? parseInt(args[8], 0) : 0;
         BlockPos chunkpos = new BlockPos(blockpos.getX() >> 4, 0, blockpos.getZ() >> 4);
 
-        ChunkGenWorker worker = new ChunkGenWorker(sender, chunkpos, count, dim, interval);
+        ChunkGenWorker worker = new ChunkGenWorker(sender, chunkpos, count, dim, interval, rate, budget, maxLoaded);
         sender.sendMessage(worker.getStartMessage(sender));
         WorldWorkerManager.addWorker(worker);
     }
@@ -25,7 +25,10 @@ import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.world.DimensionType;
+import net.minecraft.world.WorldServer;
 import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.common.chunkio.ChunkIOExecutor;
+import net.minecraftforge.server.timings.TickTimes;
 
 class CommandTps extends CommandBase
 {
@@ -68,24 +71,55 @@ class CommandTps extends CommandBase
 
         if (summary)
         {
-            for (Integer dimId : DimensionManager.getIDs())
+            for (WorldServer world : DimensionManager.getWorlds())
             {
-                double worldTickTime = mean(server.worldTickTimes.get(dimId)) * 1.0E-6D;
-                double worldTPS = Math.min(1000.0/worldTickTime, 20);
-                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tps.summary", getDimensionPrefix(dimId), TIME_FORMATTER.format(worldTickTime), TIME_FORMATTER.format(worldTPS)));
+                int dimId = world.provider.getDimension();
+                sendSummary(sender, getDimensionPrefix(dimId), world.tickTimes);
+                sendPercentiles(sender, getDimensionPrefix(dimId), world.tickTimes, TickTimes.Phase.TICK);
             }
-            double meanTickTime = mean(server.tickTimeArray) * 1.0E-6D;
-            double meanTPS = Math.min(1000.0/meanTickTime, 20);
-            sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tps.summary","Overall", TIME_FORMATTER.format(meanTickTime), TIME_FORMATTER.format(meanTPS)));
+            sendSummary(sender, "Overall", TickTimes.SERVER);
+            sendPercentiles(sender, "Overall", TickTimes.SERVER, TickTimes.Phase.TICK);
+            sendPercentiles(sender, "Overall", TickTimes.SERVER, TickTimes.Phase.CHUNK_IO);
+            sendPercentiles(sender, "Overall", TickTimes.SERVER, TickTimes.Phase.WORLD_WORKERS);
+            sendChunkIO(sender);
         }
         else
         {
-            double worldTickTime = mean(server.worldTickTimes.get(dim)) * 1.0E-6D;
-            double worldTPS = Math.min(1000.0/worldTickTime, 20);
-            sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tps.summary", getDimensionPrefix(dim), TIME_FORMATTER.format(worldTickTime), TIME_FORMATTER.format(worldTPS)));
+            WorldServer world = DimensionManager.getWorld(dim);
+            if (world == null)
+            {
+                throw new CommandException("commands.forge.tps.invalid", dim);
+            }
+            sendSummary(sender, getDimensionPrefix(dim), world.tickTimes);
+            sendPercentiles(sender, getDimensionPrefix(dim), world.tickTimes, TickTimes.Phase.TICK);
+            sendPercentiles(sender, getDimensionPrefix(dim), world.tickTimes, TickTimes.Phase.ENTITIES);
+            sendPercentiles(sender, getDimensionPrefix(dim), world.tickTimes, TickTimes.Phase.TILE_ENTITIES);
         }
     }
 
+    private static void sendSummary(ICommandSender sender, String prefix, TickTimes times)
+    {
+        double tickTime = mean(times.getRecentTicks()) * 1.0E-6D;
+        double tps = Math.min(1000.0/tickTime, 20);
+        sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tps.summary", prefix, TIME_FORMATTER.format(tickTime), TIME_FORMATTER.format(tps)));
+    }
+
+    private static void sendPercentiles(ICommandSender sender, String prefix, TickTimes times, TickTimes.Phase phase)
+    {
+        TickTimes.Summary summary = times.getSummary(phase);
+        sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tps.percentiles", prefix, phase.getName(),
+                TIME_FORMATTER.format(summary.getP50Millis()), TIME_FORMATTER.format(summary.getP95Millis()),
+                TIME_FORMATTER.format(summary.getP99Millis()), TIME_FORMATTER.format(summary.getMaxMillis())));
+    }
+
+    private static void sendChunkIO(ICommandSender sender)
+    {
+        sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tps.chunkio",
+                ChunkIOExecutor.getPendingCount(), ChunkIOExecutor.getFinishedCount(),
+                TIME_FORMATTER.format(ChunkIOExecutor.getLoadLatency(50) * 1.0E-6D), TIME_FORMATTER.format(ChunkIOExecutor.getLoadLatency(99) * 1.0E-6D),
+                ChunkIOExecutor.getSyncLoadCount(), TIME_FORMATTER.format(ChunkIOExecutor.getSyncLoadNanos() * 1.0E-6D)));
+    }
+
     private static String getDimensionPrefix(int dimId)
     {
         DimensionType providerType = DimensionManager.getProviderType(dimId);
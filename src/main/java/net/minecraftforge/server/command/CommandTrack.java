@@ -19,16 +19,23 @@
 package net.minecraftforge.server.command;
 
 import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
 import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import net.minecraft.command.CommandBase;
 import net.minecraft.command.CommandException;
 import net.minecraft.command.ICommandSender;
+import net.minecraft.command.NumberInvalidException;
 import net.minecraft.command.WrongUsageException;
 import net.minecraft.entity.Entity;
 import net.minecraft.server.MinecraftServer;
@@ -38,7 +45,10 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.world.DimensionType;
 import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.fml.common.FMLLog;
+import net.minecraftforge.fml.common.eventhandler.EventProfiler;
 import net.minecraftforge.server.timings.ForgeTimings;
+import net.minecraftforge.server.timings.TickProfiler;
 import net.minecraftforge.server.timings.TimeTracker;
 
 class CommandTrack extends CommandTreeBase
@@ -52,6 +62,9 @@ class CommandTrack extends CommandTreeBase
         addSubcommand(new ResetTrackingCommand());
         addSubcommand(new TrackResultsTileEntity());
         addSubcommand(new TrackResultsEntity());
+        addSubcommand(new TrackResultsEvents());
+        addSubcommand(new TrackResultsProfile());
+        addSubcommand(new ExportProfile());
         addSubcommand(new CommandTreeHelp(this));
     }
 
@@ -166,6 +179,11 @@ class CommandTrack extends CommandTreeBase
                 TimeTracker.ENTITY_UPDATE.reset();
                 sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.reset"));
             }
+            else if ("events".equals(type))
+            {
+                EventProfiler.reset();
+                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.reset"));
+            }
             else
             {
                 throw new WrongUsageException(getUsage(sender));
@@ -175,7 +193,7 @@ class CommandTrack extends CommandTreeBase
         @Override
         public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos)
         {
-            return Arrays.asList("te", "entity");
+            return Arrays.asList("te", "entity", "events");
         }
     }
 
@@ -355,4 +373,200 @@ class CommandTrack extends CommandTreeBase
             }
         }
     }
+
+    /**
+     * Lists the event listeners that took the most time, grouped by the owning mod and event type.
+     * Requires the event listener profiling of {@link EventProfiler} to be enabled at startup.
+     */
+    private static class TrackResultsEvents extends CommandBase
+    {
+        @Override
+        public String getName()
+        {
+            return "events";
+        }
+
+        @Override
+        public String getUsage(ICommandSender sender)
+        {
+            return "commands.forge.tracking.events.usage";
+        }
+
+        @Override
+        public int getRequiredPermissionLevel()
+        {
+            return 2;
+        }
+
+        @Override
+        public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+        {
+            if (!EventProfiler.ENABLED)
+            {
+                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.events.disabled"));
+                return;
+            }
+
+            Map<String, List<EventProfiler.ListenerTimings>> grouped = EventProfiler.getTimings().stream()
+                    .filter(timings -> timings.getCalls() > 0)
+                    .collect(Collectors.groupingBy(timings -> timings.getOwner().getModId() + " - " + timings.getEventType().getSimpleName()));
+            if (grouped.isEmpty())
+            {
+                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.noData"));
+                return;
+            }
+
+            grouped.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, List<EventProfiler.ListenerTimings>> e) -> sum(e.getValue(), EventProfiler.ListenerTimings::getTotalNanos)).reversed())
+                    .limit(10)
+                    .forEach(e -> sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.eventEntry", e.getKey(),
+                            sum(e.getValue(), EventProfiler.ListenerTimings::getCalls),
+                            formatNanos(sum(e.getValue(), EventProfiler.ListenerTimings::getTotalNanos)),
+                            formatNanos(e.getValue().stream().mapToLong(EventProfiler.ListenerTimings::getMaxNanos).max().orElse(0)),
+                            EventProfiler.isTrackingAllocations() ? sum(e.getValue(), EventProfiler.ListenerTimings::getAllocatedBytes) / 1024 + "KiB" : "-")));
+        }
+
+        private static long sum(List<EventProfiler.ListenerTimings> list, java.util.function.ToLongFunction<EventProfiler.ListenerTimings> getter)
+        {
+            return list.stream().mapToLong(getter).sum();
+        }
+    }
+
+    private static String formatNanos(long nanos)
+    {
+        return nanos < 1000000 ? TIME_FORMAT.format(nanos / 1000.0) + "us" : TIME_FORMAT.format(nanos / 1000000.0) + "ms";
+    }
+
+    private static int parseWindow(String arg) throws CommandException
+    {
+        int minutes = parseInt(arg, 1, 15);
+        for (int window : TickProfiler.WINDOWS)
+        {
+            if (window == minutes)
+                return window;
+        }
+        throw new NumberInvalidException("commands.forge.tracking.profile.window", arg);
+    }
+
+    /**
+     * Lists the tile entity types, entity types, mods or chunks that took the most update time
+     * over the last 1, 5 or 15 minutes, as recorded by the continuous {@link TickProfiler}.
+     */
+    private static class TrackResultsProfile extends CommandBase
+    {
+        @Override
+        public String getName()
+        {
+            return "profile";
+        }
+
+        @Override
+        public String getUsage(ICommandSender sender)
+        {
+            return "commands.forge.tracking.profile.usage";
+        }
+
+        @Override
+        public int getRequiredPermissionLevel()
+        {
+            return 2;
+        }
+
+        @Override
+        public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+        {
+            if (args.length < 1 || args.length > 2)
+            {
+                throw new WrongUsageException(getUsage(sender));
+            }
+            if (!TickProfiler.ENABLED)
+            {
+                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.profile.disabled"));
+                return;
+            }
+
+            TickProfiler.Category category;
+            switch (args[0])
+            {
+                case "te":     category = TickProfiler.Category.TILE_ENTITY; break;
+                case "entity": category = TickProfiler.Category.ENTITY;      break;
+                case "mod":    category = TickProfiler.Category.MOD;         break;
+                case "chunk":  category = TickProfiler.Category.CHUNK;       break;
+                default: throw new WrongUsageException(getUsage(sender));
+            }
+            int window = args.length > 1 ? parseWindow(args[1]) : 1;
+
+            List<TickProfiler.Entry> entries = TickProfiler.getEntries(category, window);
+            if (entries.isEmpty())
+            {
+                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.noData"));
+                return;
+            }
+            entries.stream()
+                    .limit(10)
+                    .forEach(e -> sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.profileEntry", e.getName(),
+                            e.getCount(), formatNanos(e.getTotalNanos()),
+                            e.hasPercentiles() ? formatNanos(e.getPercentileNanos(0.5)) : "-",
+                            e.hasPercentiles() ? formatNanos(e.getPercentileNanos(0.99)) : "-",
+                            formatNanos(e.getMaxNanos()))));
+        }
+
+        @Override
+        public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos)
+        {
+            if (args.length == 1)
+                return getListOfStringsMatchingLastWord(args, "te", "entity", "mod", "chunk");
+            if (args.length == 2)
+                return getListOfStringsMatchingLastWord(args, "1", "5", "15");
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Writes everything recorded by the {@link TickProfiler} to a CSV file in the server directory.
+     */
+    private static class ExportProfile extends CommandBase
+    {
+        private static final SimpleDateFormat FILE_DATE = new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss");
+
+        @Override
+        public String getName()
+        {
+            return "export";
+        }
+
+        @Override
+        public String getUsage(ICommandSender sender)
+        {
+            return "commands.forge.tracking.export.usage";
+        }
+
+        @Override
+        public int getRequiredPermissionLevel()
+        {
+            return 2;
+        }
+
+        @Override
+        public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+        {
+            if (!TickProfiler.ENABLED)
+            {
+                sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.profile.disabled"));
+                return;
+            }
+
+            File file = server.getFile("tickprofile-" + FILE_DATE.format(new Date()) + ".csv");
+            try
+            {
+                TickProfiler.export(file.toPath());
+            }
+            catch (IOException e)
+            {
+                FMLLog.log.error("Failed to export the tick profile to {}", file, e);
+                throw new CommandException("commands.forge.tracking.export.failed", e.getMessage());
+            }
+            sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.tracking.export.done", file.getName()));
+        }
+    }
 }
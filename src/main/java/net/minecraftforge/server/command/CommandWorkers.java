@@ -0,0 +1,72 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.minecraftforge.server.command;
+
+import java.text.DecimalFormat;
+import java.util.List;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraftforge.common.WorldWorkerManager;
+import net.minecraftforge.common.WorldWorkerManager.WorkerStats;
+
+class CommandWorkers extends CommandBase
+{
+    private static final DecimalFormat TIME_FORMATTER = new DecimalFormat("########0.000");
+
+    @Override
+    public String getName()
+    {
+        return "workers";
+    }
+
+    @Override
+    public String getUsage(ICommandSender sender)
+    {
+        return "commands.forge.workers.usage";
+    }
+
+    @Override
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+    @Override
+    public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException
+    {
+        List<WorkerStats> workers = WorldWorkerManager.getStats();
+        if (workers.isEmpty())
+        {
+            sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.workers.none"));
+            return;
+        }
+
+        for (WorkerStats stats : workers)
+        {
+            double totalMs = stats.getTotalNanos() * 1.0E-6D;
+            double avgMs = stats.getCalls() == 0 ? 0 : totalMs / stats.getCalls();
+            sender.sendMessage(TextComponentHelper.createComponentTranslation(sender, "commands.forge.workers.entry", stats.getWorker(), stats.getPriority(),
+                    stats.getCalls(), TIME_FORMATTER.format(totalMs), TIME_FORMATTER.format(avgMs), TIME_FORMATTER.format(stats.getMaxNanos() * 1.0E-6D),
+                    stats.getOverruns(), stats.getAsyncRuns()));
+        }
+    }
+}
@@ -32,6 +32,7 @@ public class ForgeCommand extends CommandTreeBase
         super.addSubcommand(new CommandTrack());
         super.addSubcommand(new CommandGenerate());
         super.addSubcommand(new CommandEntity());
+        super.addSubcommand(new CommandWorkers());
         super.addSubcommand(new CommandTreeHelp(this));
     }
 
@@ -0,0 +1,440 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.timings;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Lists;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.entity.Entity;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.registry.EntityEntry;
+import net.minecraftforge.fml.common.registry.EntityRegistry;
+
+/**
+ * Continuous profiler for tile entity and entity update times on the server.
+ *
+ * Unlike {@link TimeTracker}, which tracks single objects for a limited time on request, this records every
+ * update while enabled and attributes it to the tile entity or entity class, the owning mod and the chunk.
+ * Samples go into log-linear histograms held in preallocated primitive arrays, one slot per minute for the
+ * last {@link #SLOTS} minutes, so recording a sample never allocates and the 1, 5 and 15 minute windows can be
+ * read at any time through {@code /forge track profile} or exported to a file. Chunk keys that have not seen a
+ * sample in any slot are recycled, so the chunk table only holds the chunks updated in the last minutes.
+ *
+ * Enabled with -Dforge.tickProfiler=true. Only the server thread records.
+ */
+public final class TickProfiler
+{
+    public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("forge.tickProfiler", "false"));
+    public static final int[] WINDOWS = { 1, 5, 15 };
+    static final int SLOTS = 15;
+
+    /**
+     * The ways samples are attributed.
+     */
+    public enum Category
+    {
+        TILE_ENTITY(true), ENTITY(true), MOD(true), CHUNK(false);
+
+        private final Table table;
+
+        Category(boolean histogram)
+        {
+            this.table = new Table(histogram);
+        }
+    }
+
+    // Per class keys for the class and mod tables, resolved once per class
+    private static final ClassValue<int[]> TILE_KEYS = new ClassValue<int[]>()
+    {
+        @Override
+        protected int[] computeValue(Class<?> type)
+        {
+            @SuppressWarnings("unchecked")
+            ResourceLocation key = TileEntity.getKey((Class<? extends TileEntity>)type);
+            String name = key == null ? type.getName() : key.toString();
+            return new int[]{ Category.TILE_ENTITY.table.newKey(name), modKey(key == null ? null : key.getResourceDomain()) };
+        }
+    };
+    private static final ClassValue<int[]> ENTITY_KEYS = new ClassValue<int[]>()
+    {
+        @Override
+        protected int[] computeValue(Class<?> type)
+        {
+            @SuppressWarnings("unchecked")
+            EntityEntry entry = EntityRegistry.getEntry((Class<? extends Entity>)type);
+            ResourceLocation key = entry == null ? null : entry.getRegistryName();
+            String name = key == null ? type.getName() : key.toString();
+            return new int[]{ Category.ENTITY.table.newKey(name), modKey(key == null ? null : key.getResourceDomain()) };
+        }
+    };
+    private static final Map<String, Integer> modKeys = new HashMap<>();
+    private static final Int2ObjectOpenHashMap<Long2IntOpenHashMap> chunkKeys = new Int2ObjectOpenHashMap<>();
+    // Reverse lookup of the chunk keys, so recycled keys can be dropped from chunkKeys
+    private static int[] chunkDims = new int[16];
+    private static long[] chunkPositions = new long[16];
+    private static final IntConsumer RECYCLE_CHUNK = TickProfiler::recycleChunkKey;
+
+    private static final long[] slotMinute = new long[SLOTS];
+    private static int slot = 0;
+    private static Thread serverThread;
+
+    private TickProfiler(){}
+
+    private static int modKey(String modid)
+    {
+        return modKeys.computeIfAbsent(modid == null ? "unknown" : modid, Category.MOD.table::newKey);
+    }
+
+    private static int chunkKey(int dim, int x, int z)
+    {
+        Long2IntOpenHashMap keys = chunkKeys.get(dim);
+        if (keys == null)
+        {
+            keys = new Long2IntOpenHashMap();
+            keys.defaultReturnValue(-1);
+            chunkKeys.put(dim, keys);
+        }
+        long pos = (long)x & 0xFFFFFFFFL | ((long)z & 0xFFFFFFFFL) << 32;
+        int key = keys.get(pos);
+        if (key == -1)
+        {
+            key = Category.CHUNK.table.newKey("DIM" + dim + " [" + x + ", " + z + "]");
+            keys.put(pos, key);
+            if (key >= chunkDims.length)
+            {
+                chunkDims = Arrays.copyOf(chunkDims, Math.max(key + 1, chunkDims.length << 1));
+                chunkPositions = Arrays.copyOf(chunkPositions, chunkDims.length);
+            }
+            chunkDims[key] = dim;
+            chunkPositions[key] = pos;
+        }
+        return key;
+    }
+
+    private static void recycleChunkKey(int key)
+    {
+        Long2IntOpenHashMap keys = chunkKeys.get(chunkDims[key]);
+        if (keys == null)
+            return;
+        keys.remove(chunkPositions[key]);
+        if (keys.isEmpty())
+            chunkKeys.remove(chunkDims[key]);
+    }
+
+    /**
+     * @return If the current thread is the server thread, the only one samples are recorded from
+     */
+    public static boolean isProfilingThread()
+    {
+        return Thread.currentThread() == serverThread;
+    }
+
+    /**
+     * Moves to the slot of the current minute, clearing it if it still holds data from an older minute.
+     * Called at the start of every server tick.
+     */
+    public static void tick()
+    {
+        if (!ENABLED)
+            return;
+        serverThread = Thread.currentThread();
+        long minute = System.currentTimeMillis() / 60000;
+        int next = (int)(minute % SLOTS);
+        if (slotMinute[next] != minute)
+        {
+            for (Category category : Category.values())
+                category.table.clear(next, category == Category.CHUNK ? RECYCLE_CHUNK : null);
+            slotMinute[next] = minute;
+        }
+        slot = next;
+    }
+
+    static void record(TileEntity te, long nanos)
+    {
+        if (te.getWorld() == null || te.getWorld().isRemote)
+            return;
+        int[] keys = TILE_KEYS.get(te.getClass());
+        Category.TILE_ENTITY.table.add(keys[0], slot, nanos);
+        Category.MOD.table.add(keys[1], slot, nanos);
+        Category.CHUNK.table.add(chunkKey(te.getWorld().provider.getDimension(), te.getPos().getX() >> 4, te.getPos().getZ() >> 4), slot, nanos);
+    }
+
+    static void record(Entity entity, long nanos)
+    {
+        if (entity.world.isRemote)
+            return;
+        int[] keys = ENTITY_KEYS.get(entity.getClass());
+        Category.ENTITY.table.add(keys[0], slot, nanos);
+        Category.MOD.table.add(keys[1], slot, nanos);
+        Category.CHUNK.table.add(chunkKey(entity.world.provider.getDimension(), entity.chunkCoordX, entity.chunkCoordZ), slot, nanos);
+    }
+
+    /**
+     * Gathers the entries of a category over the last minutes, sorted by total time, largest first.
+     *
+     * @param category The category to read
+     * @param minutes The window length, 1 to {@link #SLOTS} minutes, including the current one
+     */
+    public static List<Entry> getEntries(Category category, int minutes)
+    {
+        long now = System.currentTimeMillis() / 60000;
+        boolean[] slots = new boolean[SLOTS];
+        for (int x = 0; x < SLOTS; x++)
+        {
+            slots[x] = slotMinute[x] > now - Math.min(Math.max(minutes, 1), SLOTS);
+        }
+        List<Entry> ret = category.table.collect(slots);
+        ret.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return ret;
+    }
+
+    /**
+     * Writes every entry of every category and window as CSV.
+     */
+    public static void export(Path file) throws IOException
+    {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8))
+        {
+            out.write("window_minutes,category,key,count,total_ms,mean_us,p50_us,p99_us,max_us\n");
+            for (int window : WINDOWS)
+            {
+                for (Category category : Category.values())
+                {
+                    for (Entry e : getEntries(category, window))
+                    {
+                        out.write(String.format(Locale.ROOT, "%d,%s,\"%s\",%d,%.3f,%.3f,%s,%s,%.3f\n", window, category.name().toLowerCase(Locale.ROOT),
+                                e.getName().replace("\"", "\"\""), e.getCount(), e.getTotalNanos() / 1e6, e.getMeanNanos() / 1e3,
+                                e.hasPercentiles() ? String.format(Locale.ROOT, "%.3f", e.getPercentileNanos(0.5) / 1e3) : "",
+                                e.hasPercentiles() ? String.format(Locale.ROOT, "%.3f", e.getPercentileNanos(0.99) / 1e3) : "",
+                                e.getMaxNanos() / 1e3));
+                    }
+                }
+            }
+        }
+    }
+
+    // Log-linear buckets, values below 4ns exact then 4 buckets per power of two, up to ~68s
+    static final int BUCKETS = 144;
+
+    static int bucket(long nanos)
+    {
+        if (nanos < 4)
+            return (int)Math.max(nanos, 0);
+        int exp = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int)(nanos >>> (exp - 2)) & 3;
+        return Math.min(BUCKETS - 1, (exp - 1) * 4 + sub);
+    }
+
+    static long bucketValue(int bucket)
+    {
+        if (bucket < 4)
+            return bucket;
+        return (4L + (bucket & 3)) << (bucket / 4 - 1);
+    }
+
+    /**
+     * @return The lower bound of the bucket holding the percentile, capped to the maximum
+     */
+    static long percentile(long[] histogram, long count, long max, double percentile)
+    {
+        long target = Math.max((long)Math.ceil(count * percentile), 1);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++)
+        {
+            seen += histogram[b];
+            if (seen >= target)
+                return Math.min(bucketValue(b), max);
+        }
+        return max;
+    }
+
+    /**
+     * Per key, per minute slot sample counts, totals, maxima and optionally histograms,
+     * in flat arrays indexed by key * SLOTS + slot that only grow when a new key is added
+     * and no recycled key is free.
+     */
+    private static final class Table
+    {
+        private final boolean histogram;
+        private String[] names = new String[16];
+        private long[] counts = new long[16 * SLOTS];
+        private long[] totals = new long[16 * SLOTS];
+        private long[] maxes = new long[16 * SLOTS];
+        private int[] histograms;
+        private int size = 0;
+        private int[] free = new int[16];
+        private int freeCount = 0;
+
+        private Table(boolean histogram)
+        {
+            this.histogram = histogram;
+            this.histograms = histogram ? new int[16 * SLOTS * BUCKETS] : null;
+        }
+
+        private int newKey(String name)
+        {
+            if (freeCount > 0)
+            {
+                int key = free[--freeCount];
+                names[key] = name;
+                return key;
+            }
+            if (size == names.length)
+            {
+                int capacity = size << 1;
+                names = Arrays.copyOf(names, capacity);
+                counts = Arrays.copyOf(counts, capacity * SLOTS);
+                totals = Arrays.copyOf(totals, capacity * SLOTS);
+                maxes = Arrays.copyOf(maxes, capacity * SLOTS);
+                if (histogram)
+                    histograms = Arrays.copyOf(histograms, capacity * SLOTS * BUCKETS);
+            }
+            names[size] = name;
+            return size++;
+        }
+
+        private void add(int key, int slot, long nanos)
+        {
+            int idx = key * SLOTS + slot;
+            counts[idx]++;
+            totals[idx] += nanos;
+            if (nanos > maxes[idx])
+                maxes[idx] = nanos;
+            if (histogram)
+                histograms[idx * BUCKETS + bucket(nanos)]++;
+        }
+
+        /**
+         * Clears the slot for every key.
+         *
+         * @param recycled If not null, keys without samples in any slot are freed for reuse and passed to it
+         */
+        private void clear(int slot, @Nullable IntConsumer recycled)
+        {
+            for (int key = 0; key < size; key++)
+            {
+                int idx = key * SLOTS + slot;
+                counts[idx] = 0;
+                totals[idx] = 0;
+                maxes[idx] = 0;
+                if (histogram)
+                    Arrays.fill(histograms, idx * BUCKETS, (idx + 1) * BUCKETS, 0);
+                if (recycled != null && names[key] != null && isIdle(key))
+                {
+                    names[key] = null;
+                    if (freeCount == free.length)
+                        free = Arrays.copyOf(free, freeCount << 1);
+                    free[freeCount++] = key;
+                    recycled.accept(key);
+                }
+            }
+        }
+
+        private boolean isIdle(int key)
+        {
+            for (int idx = key * SLOTS; idx < (key + 1) * SLOTS; idx++)
+            {
+                if (counts[idx] != 0)
+                    return false;
+            }
+            return true;
+        }
+
+        private List<Entry> collect(boolean[] slots)
+        {
+            List<Entry> ret = Lists.newArrayList();
+            for (int key = 0; key < size; key++)
+            {
+                long count = 0, total = 0, max = 0;
+                long[] hist = histogram ? new long[BUCKETS] : null;
+                for (int slot = 0; slot < SLOTS; slot++)
+                {
+                    if (!slots[slot])
+                        continue;
+                    int idx = key * SLOTS + slot;
+                    count += counts[idx];
+                    total += totals[idx];
+                    max = Math.max(max, maxes[idx]);
+                    if (hist != null)
+                    {
+                        for (int b = 0; b < BUCKETS; b++)
+                            hist[b] += histograms[idx * BUCKETS + b];
+                    }
+                }
+                if (count > 0 && names[key] != null)
+                    ret.add(new Entry(names[key], count, total, max, hist));
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * The aggregated samples of one key over a window.
+     */
+    public static final class Entry
+    {
+        private final String name;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        private Entry(String name, long count, long totalNanos, long maxNanos, long[] histogram)
+        {
+            this.name = name;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getMaxNanos() { return maxNanos; }
+        public double getMeanNanos() { return count == 0 ? 0 : (double)totalNanos / count; }
+        public boolean hasPercentiles() { return histogram != null; }
+
+        /**
+         * @param percentile Between 0 and 1
+         * @return The lower bound of the bucket holding the percentile, accurate to within 25%, or 0 if there is no histogram
+         */
+        public long getPercentileNanos(double percentile)
+        {
+            return histogram == null ? 0 : percentile(histogram, count, maxNanos, percentile);
+        }
+    }
+}
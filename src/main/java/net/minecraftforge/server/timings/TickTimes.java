@@ -0,0 +1,287 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.timings;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.minecraftforge.fml.common.FMLLog;
+
+/**
+ * Latency histograms of the server tick and its phases, one instance for the whole server in {@link #SERVER}
+ * and one per loaded dimension.
+ *
+ * Samples are recorded by the server thread only and kept for the last one to two minutes, in two generations
+ * of log-linear histograms that are swapped every minute. Readers, such as {@code /forge tps} or JMX clients,
+ * can read them from any thread without blocking the tick.
+ */
+public final class TickTimes
+{
+    public enum Phase
+    {
+        TICK("tick"),
+        ENTITIES("entities"),
+        TILE_ENTITIES("tile entities"),
+        CHUNK_IO("chunk I/O"),
+        WORLD_WORKERS("world workers");
+
+        private final String name;
+
+        Phase(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    private static final int PHASES = Phase.values().length;
+    private static final int COUNT = TickProfiler.BUCKETS;
+    private static final int TOTAL = COUNT + 1;
+    private static final int MAX = COUNT + 2;
+    private static final int STRIDE = COUNT + 3;
+    private static final long GENERATION_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * The whole server tick, chunk I/O callbacks and world workers.
+     */
+    public static final TickTimes SERVER = new TickTimes();
+
+    private final AtomicLongArray[] generations = { new AtomicLongArray(PHASES * STRIDE), new AtomicLongArray(PHASES * STRIDE) };
+    private volatile int current = 0;
+    private long generationStart = System.nanoTime();
+    private final long[] recent = new long[100];
+    private long phaseStart;
+    // The dimension phase that is running, null outside of the entity and tile entity updates
+    private Phase phase;
+
+    static
+    {
+        register("server", SERVER);
+    }
+
+    /**
+     * @return The times of the last 100 ticks, indexed by tick counter modulo 100
+     */
+    public long[] getRecentTicks()
+    {
+        return recent;
+    }
+
+    /**
+     * Records the time of a complete tick.
+     *
+     * @param tickCounter The server tick counter
+     * @param nanos The time the tick took
+     */
+    public void recordTick(int tickCounter, long nanos)
+    {
+        recent[tickCounter % 100] = nanos;
+        record(Phase.TICK, nanos);
+    }
+
+    /**
+     * Marks the start of the entity update of a dimension.
+     */
+    public void startEntities()
+    {
+        phase = Phase.ENTITIES;
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of the entity update and the start of the tile entity update of a dimension.
+     */
+    public void startTileEntities()
+    {
+        long now = System.nanoTime();
+        if (phase == Phase.ENTITIES)
+            record(Phase.ENTITIES, now - phaseStart);
+        phase = Phase.TILE_ENTITIES;
+        phaseStart = now;
+    }
+
+    /**
+     * Marks the end of the tile entity update of a dimension. Nothing is recorded if the tile entity
+     * update did not run, as in dimensions that skip updating entities while nobody is in them.
+     */
+    public void endTileEntities()
+    {
+        if (phase == Phase.TILE_ENTITIES)
+            record(Phase.TILE_ENTITIES, System.nanoTime() - phaseStart);
+        phase = null;
+    }
+
+    public void record(Phase phase, long nanos)
+    {
+        long now = System.nanoTime();
+        if (now - generationStart > GENERATION_NANOS)
+        {
+            // Swap and clear the older generation, so the histograms always cover at least the last minute
+            int next = current ^ 1;
+            AtomicLongArray clear = generations[next];
+            for (int x = 0; x < clear.length(); x++)
+                clear.lazySet(x, 0);
+            current = next;
+            generationStart = now;
+        }
+
+        // There is a single writer, so plain increments published through lazySet are enough
+        AtomicLongArray gen = generations[current];
+        int base = phase.ordinal() * STRIDE;
+        int bucket = base + TickProfiler.bucket(nanos);
+        gen.lazySet(bucket, gen.get(bucket) + 1);
+        gen.lazySet(base + COUNT, gen.get(base + COUNT) + 1);
+        gen.lazySet(base + TOTAL, gen.get(base + TOTAL) + nanos);
+        if (nanos > gen.get(base + MAX))
+            gen.lazySet(base + MAX, nanos);
+    }
+
+    /**
+     * Merges the samples of both generations of a phase.
+     */
+    public Summary getSummary(Phase phase)
+    {
+        long[] histogram = new long[TickProfiler.BUCKETS];
+        long count = 0, total = 0, max = 0;
+        int base = phase.ordinal() * STRIDE;
+        for (AtomicLongArray gen : generations)
+        {
+            for (int b = 0; b < histogram.length; b++)
+                histogram[b] += gen.get(base + b);
+            count += gen.get(base + COUNT);
+            total += gen.get(base + TOTAL);
+            max = Math.max(max, gen.get(base + MAX));
+        }
+        return new Summary(histogram, count, total, max);
+    }
+
+    /**
+     * Registers the times with the platform MBean server, replacing anything registered under the same name.
+     */
+    public static void register(String name, TickTimes times)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(new Bean(times), objectName);
+        }
+        catch (JMException | SecurityException e)
+        {
+            FMLLog.log.debug("Unable to register the tick times of {} with JMX", name, e);
+        }
+    }
+
+    public static void unregister(String name)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        }
+        catch (JMException | SecurityException e)
+        {
+            FMLLog.log.debug("Unable to unregister the tick times of {} from JMX", name, e);
+        }
+    }
+
+    private static ObjectName getObjectName(String name) throws JMException
+    {
+        return new ObjectName("net.minecraftforge:type=TickTimes,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Count, mean, percentiles and maximum of a phase. The percentiles are accurate to within 25%.
+     */
+    public static final class Summary
+    {
+        private final long[] histogram;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Summary(long[] histogram, long count, long totalNanos, long maxNanos)
+        {
+            this.histogram = histogram;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() { return count; }
+        public double getMeanMillis() { return count == 0 ? 0 : totalNanos / 1.0E6D / count; }
+        public double getP50Millis() { return getPercentileMillis(0.50); }
+        public double getP95Millis() { return getPercentileMillis(0.95); }
+        public double getP99Millis() { return getPercentileMillis(0.99); }
+        public double getMaxMillis() { return maxNanos / 1.0E6D; }
+
+        public double getPercentileMillis(double percentile)
+        {
+            return count == 0 ? 0 : TickProfiler.percentile(histogram, count, maxNanos, percentile) / 1.0E6D;
+        }
+    }
+
+    private static final class Bean implements TickTimesMXBean
+    {
+        private final TickTimes times;
+
+        private Bean(TickTimes times)
+        {
+            this.times = times;
+        }
+
+        @Override
+        public Map<String, Summary> getPhases()
+        {
+            Map<String, Summary> ret = new LinkedHashMap<>();
+            for (Phase phase : Phase.values())
+            {
+                Summary summary = times.getSummary(phase);
+                if (summary.getCount() > 0)
+                    ret.put(phase.getName(), summary);
+            }
+            return ret;
+        }
+
+        @Override
+        public double getMeanTickMillis()
+        {
+            long sum = 0;
+            for (long time : times.recent)
+                sum += time;
+            return sum / 1.0E6D / times.recent.length;
+        }
+    }
+}
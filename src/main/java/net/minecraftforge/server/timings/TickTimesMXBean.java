@@ -0,0 +1,39 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.timings;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link TickTimes}, registered as {@code net.minecraftforge:type=TickTimes} with the name
+ * {@code "server"} or {@code "dim<id>"}.
+ */
+public interface TickTimesMXBean
+{
+    /**
+     * @return The summaries of the phases that recorded samples in the last one to two minutes, by phase name
+     */
+    Map<String, TickTimes.Summary> getPhases();
+
+    /**
+     * @return The mean time of the last 100 ticks
+     */
+    double getMeanTickMillis();
+}
@@ -23,6 +23,9 @@ import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ObjLongConsumer;
+
+import javax.annotation.Nullable;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.MapMaker;
@@ -41,11 +44,11 @@ public class TimeTracker<T>
     /**
      * A tracker for timing tile entity update
      */
-    public static final TimeTracker<TileEntity> TILE_ENTITY_UPDATE = new TimeTracker<>();
+    public static final TimeTracker<TileEntity> TILE_ENTITY_UPDATE = new TimeTracker<>(TickProfiler::record);
     /**
      * A tracker for timing entity updates
      */
-    public static final TimeTracker<Entity> ENTITY_UPDATE = new TimeTracker<>();
+    public static final TimeTracker<Entity> ENTITY_UPDATE = new TimeTracker<>(TickProfiler::record);
 
     private boolean enabled;
     private int trackingDuration;
@@ -53,6 +56,22 @@ public class TimeTracker<T>
     private WeakReference<T> currentlyTracking;
     private long trackTime;
     private long timing;
+    @Nullable
+    private final ObjLongConsumer<T> profiler;
+    private long profileStart;
+
+    public TimeTracker()
+    {
+        this(null);
+    }
+
+    /**
+     * @param profiler Receives the update time of every tracked object while {@link TickProfiler} is enabled
+     */
+    private TimeTracker(@Nullable ObjLongConsumer<T> profiler)
+    {
+        this.profiler = profiler != null && TickProfiler.ENABLED ? profiler : null;
+    }
 
     /**
      * Returns the timings data recorded by the tracker
@@ -87,6 +106,14 @@ public class TimeTracker<T>
      */
     public void trackEnd(T tracking)
     {
+        if (profiler != null && TickProfiler.isProfilingThread())
+        {
+            long nanoTime = System.nanoTime();
+            profiler.accept(tracking, nanoTime - profileStart);
+            if (enabled)
+                this.trackEnd(tracking, nanoTime);
+            return;
+        }
         if (!enabled)
             return;
         this.trackEnd(tracking, System.nanoTime());
@@ -110,6 +137,13 @@ public class TimeTracker<T>
      */
     public void trackStart(T toTrack)
     {
+        if (profiler != null && TickProfiler.isProfilingThread())
+        {
+            long nanoTime = profileStart = System.nanoTime();
+            if (enabled)
+                this.trackStart(toTrack, nanoTime);
+            return;
+        }
         if (!enabled)
             return;
         this.trackStart(toTrack, System.nanoTime());
@@ -0,0 +1,174 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraftforge.fml.common.discovery.asm.ModAnnotation.EnumHolder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Type;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class AnnotationCacheTest
+{
+    private static Object roundTrip(Object value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            AnnotationCache.writeValue(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Object read = AnnotationCache.readValue(in);
+        Assert.assertEquals("The value was not read completely", 0, in.available());
+        return read;
+    }
+
+    private static void assertRoundTrip(Object value) throws IOException
+    {
+        Object read = roundTrip(value);
+        Assert.assertEquals(value, read);
+        if (value != null)
+            Assert.assertSame("The value should keep its type", value.getClass(), read.getClass());
+    }
+
+    @Test
+    public void testNull() throws IOException
+    {
+        Assert.assertNull(roundTrip(null));
+    }
+
+    @Test
+    public void testStrings() throws IOException
+    {
+        assertRoundTrip("");
+        assertRoundTrip("modid");
+        assertRoundTrip("n\u00e4me \u4e2d \uD83D\uDE00");
+        // Longer than DataOutput.writeUTF allows
+        assertRoundTrip(Strings.repeat("long", 20000));
+    }
+
+    @Test
+    public void testPrimitives() throws IOException
+    {
+        assertRoundTrip(Integer.MIN_VALUE);
+        assertRoundTrip(42);
+        assertRoundTrip(Long.MAX_VALUE);
+        assertRoundTrip(true);
+        assertRoundTrip(false);
+        assertRoundTrip((byte)-7);
+        assertRoundTrip('\u20ac');
+        assertRoundTrip((short)12345);
+        assertRoundTrip(1.5f);
+        assertRoundTrip(Float.NaN);
+        assertRoundTrip(-0.0d);
+        assertRoundTrip(Double.MAX_VALUE);
+    }
+
+    @Test
+    public void testTypes() throws IOException
+    {
+        assertRoundTrip(Type.getType("Lnet/minecraftforge/fml/common/Mod;"));
+        assertRoundTrip(Type.INT_TYPE);
+        assertRoundTrip(Type.getType("[[Ljava/lang/String;"));
+    }
+
+    @Test
+    public void testEnum() throws IOException
+    {
+        EnumHolder holder = (EnumHolder)roundTrip(new EnumHolder("Lnet/minecraftforge/fml/relauncher/Side;", "CLIENT"));
+        Assert.assertEquals("Lnet/minecraftforge/fml/relauncher/Side;", holder.getDesc());
+        Assert.assertEquals("CLIENT", holder.getValue());
+    }
+
+    @Test
+    public void testList() throws IOException
+    {
+        List<Object> list = Lists.newArrayList("a", 1, Type.LONG_TYPE, null, Lists.newArrayList("nested"));
+        assertRoundTrip(list);
+        assertRoundTrip(Lists.newArrayList());
+
+        List<?> enums = (List<?>)roundTrip(Lists.newArrayList(new EnumHolder("Lnet/minecraftforge/fml/relauncher/Side;", "SERVER")));
+        Assert.assertEquals("SERVER", ((EnumHolder)enums.get(0)).getValue());
+    }
+
+    @Test
+    public void testMap() throws IOException
+    {
+        Map<String, Object> inner = Maps.newHashMap();
+        inner.put("value", "inner");
+        inner.put("values", Lists.newArrayList(1, 2, 3));
+        Map<String, Object> map = Maps.newHashMap();
+        map.put("modid", "test");
+        map.put("clientSideOnly", true);
+        map.put("nested", inner);
+        map.put("annotations", Lists.newArrayList(inner, Maps.newHashMap()));
+        assertRoundTrip(map);
+        assertRoundTrip(Maps.newHashMap());
+    }
+
+    @Test
+    public void testArrays() throws IOException
+    {
+        Object[] arrays = {
+            new int[] { 1, -2, 3 }, new long[] { 4L }, new boolean[] { true, false }, new byte[] { 5, 6 },
+            new char[] { 'x', 'y' }, new short[] { 7 }, new float[] { 8.5f }, new double[] { 9.25d, -1d }
+        };
+        for (Object array : arrays)
+        {
+            Object read = roundTrip(array);
+            Assert.assertSame("The array should keep its component type", array.getClass(), read.getClass());
+            Assert.assertTrue("Array contents do not match for " + array.getClass().getSimpleName(), Arrays.deepEquals(new Object[] { array }, new Object[] { read }));
+        }
+    }
+
+    @Test
+    public void testEmptyArrays() throws IOException
+    {
+        Object[] arrays = { new int[0], new long[0], new boolean[0], new byte[0], new char[0], new short[0], new float[0], new double[0] };
+        for (Object array : arrays)
+        {
+            Assert.assertSame("Empty arrays should keep their component type", array.getClass(), roundTrip(array).getClass());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedValue() throws IOException
+    {
+        roundTrip(new Object());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownTag() throws IOException
+    {
+        AnnotationCache.readValue(new DataInputStream(new ByteArrayInputStream(new byte[] { 127 })));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml.common.network.handshake;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+
+import java.util.Collections;
+import java.util.Set;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.fml.common.network.ByteBufUtils;
+import net.minecraftforge.registries.ForgeRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+
+public class RegistrySnapshotCacheTest
+{
+    private static final ResourceLocation REGISTRY = new ResourceLocation("minecraft:blocks");
+
+    private static ForgeRegistry.Snapshot createSnapshot()
+    {
+        ForgeRegistry.Snapshot snapshot = new ForgeRegistry.Snapshot();
+        snapshot.ids.put(new ResourceLocation("minecraft:stone"), 1);
+        snapshot.ids.put(new ResourceLocation("minecraft:stone_slab"), 44);
+        snapshot.ids.put(new ResourceLocation("minecraft:stone_stairs"), 67);
+        snapshot.ids.put(new ResourceLocation("minecraft:air"), 0);
+        snapshot.ids.put(new ResourceLocation("testmod:machine"), 300);
+        snapshot.ids.put(new ResourceLocation("testmod:machine_frame"), 301);
+        snapshot.ids.put(new ResourceLocation("a:b"), 4095);
+        snapshot.dummied.add(new ResourceLocation("oldmod:gone"));
+        snapshot.dummied.add(new ResourceLocation("oldmod:gone_too"));
+        snapshot.overrides.put(new ResourceLocation("minecraft:dirt"), "testmod");
+        return snapshot;
+    }
+
+    private static void assertSameContent(ForgeRegistry.Snapshot expected, ForgeRegistry.Snapshot actual)
+    {
+        Assert.assertEquals("Ids do not match", expected.ids, actual.ids);
+        Assert.assertEquals("Dummies do not match", expected.dummied, actual.dummied);
+        Assert.assertEquals("Overrides do not match", expected.overrides, actual.overrides);
+    }
+
+    private static ForgeRegistry.Snapshot roundTrip(ForgeRegistry.Snapshot snapshot, boolean compressNames)
+    {
+        ByteBuf buf = Unpooled.buffer();
+        RegistrySnapshotCache.writeSnapshot(buf, snapshot, compressNames);
+        ForgeRegistry.Snapshot read = RegistrySnapshotCache.readSnapshot(buf, compressNames);
+        Assert.assertEquals("The snapshot was not read completely", 0, buf.readableBytes());
+        return read;
+    }
+
+    @Test
+    public void testCompressedRoundTrip()
+    {
+        ForgeRegistry.Snapshot snapshot = createSnapshot();
+        assertSameContent(snapshot, roundTrip(snapshot, true));
+    }
+
+    @Test
+    public void testUncompressedRoundTrip()
+    {
+        ForgeRegistry.Snapshot snapshot = createSnapshot();
+        assertSameContent(snapshot, roundTrip(snapshot, false));
+    }
+
+    @Test
+    public void testEmptyRoundTrip()
+    {
+        ForgeRegistry.Snapshot snapshot = new ForgeRegistry.Snapshot();
+        assertSameContent(snapshot, roundTrip(snapshot, true));
+    }
+
+    @Test
+    public void testCompressionIsSmaller()
+    {
+        ForgeRegistry.Snapshot snapshot = createSnapshot();
+        ByteBuf compressed = Unpooled.buffer();
+        RegistrySnapshotCache.writeSnapshot(compressed, snapshot, true);
+        ByteBuf plain = Unpooled.buffer();
+        RegistrySnapshotCache.writeSnapshot(plain, snapshot, false);
+        Assert.assertTrue("Prefix compression should shrink names that share a domain", compressed.readableBytes() < plain.readableBytes());
+    }
+
+    @Test
+    public void testNamesRoundTrip()
+    {
+        // The second and third names share a high surrogate, which must not be split from its low surrogate
+        Set<ResourceLocation> names = Sets.newHashSet(
+                new ResourceLocation("test:name"),
+                new ResourceLocation("test:\uD83D\uDE00a"),
+                new ResourceLocation("test:\uD83D\uDE01b"),
+                new ResourceLocation("test:name_longer"),
+                new ResourceLocation("other:x"));
+        for (boolean compressNames : new boolean[] { true, false })
+        {
+            ByteBuf buf = Unpooled.buffer();
+            RegistrySnapshotCache.writeNames(buf, names, compressNames);
+            Assert.assertEquals(names, RegistrySnapshotCache.readNames(buf, compressNames));
+            Assert.assertEquals("The names were not read completely", 0, buf.readableBytes());
+        }
+    }
+
+    @Test(expected = DecoderException.class)
+    public void testInvalidSharedPrefix()
+    {
+        ByteBuf buf = Unpooled.buffer();
+        ByteBufUtils.writeVarInt(buf, 1, 3);
+        ByteBufUtils.writeVarInt(buf, 5, 3);
+        ByteBufUtils.writeUTF8String(buf, "test:name");
+        RegistrySnapshotCache.readNames(buf, true);
+    }
+
+    @Test
+    public void testHashIgnoresOrder()
+    {
+        ForgeRegistry.Snapshot snapshot = createSnapshot();
+        ForgeRegistry.Snapshot read = roundTrip(snapshot, true);
+        Assert.assertEquals("Equal content should hash the same", RegistrySnapshotCache.hash(snapshot), RegistrySnapshotCache.hash(read));
+
+        read.ids.put(new ResourceLocation("minecraft:stone"), 2);
+        Assert.assertNotEquals("Different ids should hash differently", RegistrySnapshotCache.hash(snapshot), RegistrySnapshotCache.hash(read));
+    }
+
+    @Test
+    public void testDeltaRoundTrip()
+    {
+        ForgeRegistry.Snapshot base = createSnapshot();
+        ForgeRegistry.Snapshot current = createSnapshot();
+        current.ids.remove(new ResourceLocation("testmod:machine_frame"));
+        current.ids.put(new ResourceLocation("testmod:machine"), 302);
+        current.ids.put(new ResourceLocation("testmod:pipe"), 303);
+        current.dummied.remove(new ResourceLocation("oldmod:gone_too"));
+        HashCode baseHash = RegistrySnapshotCache.hash(base);
+        HashCode hash = RegistrySnapshotCache.hash(current);
+
+        FMLHandshakeMessage.CachedRegistryData msg = RegistrySnapshotCache.createDelta(false, REGISTRY, hash, baseHash, base, current);
+        Assert.assertEquals("Only added and changed ids should be sent",
+                Sets.newHashSet(new ResourceLocation("testmod:machine"), new ResourceLocation("testmod:pipe")), msg.getSnapshot().ids.keySet());
+        Assert.assertEquals(Collections.singleton(new ResourceLocation("testmod:machine_frame")), msg.getRemoved());
+
+        ByteBuf buf = Unpooled.buffer();
+        msg.toBytes(buf);
+        FMLHandshakeMessage.CachedRegistryData read = new FMLHandshakeMessage.CachedRegistryData();
+        read.fromBytes(buf);
+        Assert.assertEquals("The message was not read completely", 0, buf.readableBytes());
+        Assert.assertEquals(FMLHandshakeMessage.CachedRegistryData.DELTA, read.getMode());
+        Assert.assertEquals(REGISTRY, read.getName());
+        Assert.assertEquals(hash, read.getHash());
+        Assert.assertEquals(baseHash, read.getBaseHash());
+
+        ForgeRegistry.Snapshot applied = RegistrySnapshotCache.applyDelta(base, read);
+        assertSameContent(current, applied);
+        Assert.assertEquals("The applied delta should match the hash the server sent", hash, RegistrySnapshotCache.hash(applied));
+    }
+
+    @Test
+    public void testDeltaWithoutChanges()
+    {
+        ForgeRegistry.Snapshot base = createSnapshot();
+        HashCode hash = RegistrySnapshotCache.hash(base);
+        FMLHandshakeMessage.CachedRegistryData msg = RegistrySnapshotCache.createDelta(false, REGISTRY, hash, hash, base, createSnapshot());
+        Assert.assertTrue(msg.getSnapshot().ids.isEmpty());
+        Assert.assertTrue(msg.getRemoved().isEmpty());
+        assertSameContent(base, RegistrySnapshotCache.applyDelta(base, msg));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.timings;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TickProfilerTest
+{
+    @Test
+    public void testSmallValuesAreExact()
+    {
+        for (int x = 0; x < 4; x++)
+        {
+            Assert.assertEquals(x, TickProfiler.bucket(x));
+            Assert.assertEquals(x, TickProfiler.bucketValue(x));
+        }
+        Assert.assertEquals("Negative times should go into the first bucket", 0, TickProfiler.bucket(-5));
+    }
+
+    @Test
+    public void testBucketBounds()
+    {
+        for (long nanos = 1; nanos < 1L << 36; nanos += 1 + nanos / 7)
+        {
+            int bucket = TickProfiler.bucket(nanos);
+            long lower = TickProfiler.bucketValue(bucket);
+            Assert.assertTrue("Bucket " + bucket + " starts above " + nanos, lower <= nanos);
+            Assert.assertTrue("Bucket " + bucket + " is more than 25% below " + nanos, nanos < lower + Math.max(lower / 4, 1));
+        }
+    }
+
+    @Test
+    public void testBucketsAreContiguous()
+    {
+        for (int bucket = 0; bucket < TickProfiler.BUCKETS; bucket++)
+        {
+            long lower = TickProfiler.bucketValue(bucket);
+            Assert.assertEquals("The lower bound of a bucket should map back to it", bucket, TickProfiler.bucket(lower));
+            if (bucket > 0)
+                Assert.assertEquals("The value below a bucket should be in the previous one", bucket - 1, TickProfiler.bucket(lower - 1));
+        }
+    }
+
+    @Test
+    public void testLargeValuesAreCapped()
+    {
+        Assert.assertEquals(TickProfiler.BUCKETS - 1, TickProfiler.bucket(Long.MAX_VALUE));
+        Assert.assertEquals(TickProfiler.BUCKETS - 1, TickProfiler.bucket(TickProfiler.bucketValue(TickProfiler.BUCKETS - 1) * 4));
+    }
+
+    @Test
+    public void testPercentile()
+    {
+        long[] histogram = new long[TickProfiler.BUCKETS];
+        long max = 50_000_000L;
+        histogram[TickProfiler.bucket(1_000)] += 90;
+        histogram[TickProfiler.bucket(100_000)] += 9;
+        histogram[TickProfiler.bucket(max)] += 1;
+
+        Assert.assertEquals(TickProfiler.bucketValue(TickProfiler.bucket(1_000)), TickProfiler.percentile(histogram, 100, max, 0.5));
+        Assert.assertEquals(TickProfiler.bucketValue(TickProfiler.bucket(1_000)), TickProfiler.percentile(histogram, 100, max, 0.9));
+        Assert.assertEquals(TickProfiler.bucketValue(TickProfiler.bucket(100_000)), TickProfiler.percentile(histogram, 100, max, 0.91));
+        Assert.assertEquals(TickProfiler.bucketValue(TickProfiler.bucket(100_000)), TickProfiler.percentile(histogram, 100, max, 0.99));
+        Assert.assertEquals(TickProfiler.bucketValue(TickProfiler.bucket(max)), TickProfiler.percentile(histogram, 100, max, 1.0));
+        Assert.assertEquals("The lowest percentile should still need one sample", TickProfiler.bucketValue(TickProfiler.bucket(1_000)), TickProfiler.percentile(histogram, 100, max, 0));
+    }
+
+    @Test
+    public void testPercentileCappedToMax()
+    {
+        long[] histogram = new long[TickProfiler.BUCKETS];
+        histogram[TickProfiler.BUCKETS - 1] = 1;
+        Assert.assertEquals("Percentiles should never exceed the maximum", 1234, TickProfiler.percentile(histogram, 1, 1234, 0.5));
+        Assert.assertEquals("Missing samples should report the maximum", 1234, TickProfiler.percentile(new long[TickProfiler.BUCKETS], 1, 1234, 0.5));
+    }
+}
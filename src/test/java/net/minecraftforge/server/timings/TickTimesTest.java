@@ -0,0 +1,104 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.timings;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TickTimesTest
+{
+    private static final double DELTA = 1.0E-9D;
+
+    @Test
+    public void testEmptySummary()
+    {
+        TickTimes.Summary summary = new TickTimes().getSummary(TickTimes.Phase.TICK);
+        Assert.assertEquals(0, summary.getCount());
+        Assert.assertEquals(0, summary.getMeanMillis(), DELTA);
+        Assert.assertEquals(0, summary.getP99Millis(), DELTA);
+        Assert.assertEquals(0, summary.getMaxMillis(), DELTA);
+    }
+
+    @Test
+    public void testSummary()
+    {
+        TickTimes times = new TickTimes();
+        for (int x = 0; x < 98; x++)
+            times.record(TickTimes.Phase.TICK, 10_000_000L);
+        times.record(TickTimes.Phase.TICK, 40_000_000L);
+        times.record(TickTimes.Phase.TICK, 200_000_000L);
+
+        TickTimes.Summary summary = times.getSummary(TickTimes.Phase.TICK);
+        Assert.assertEquals(100, summary.getCount());
+        Assert.assertEquals((98 * 10 + 40 + 200) / 100.0D, summary.getMeanMillis(), DELTA);
+        Assert.assertEquals(200, summary.getMaxMillis(), DELTA);
+        assertWithinBucket(10, summary.getP50Millis());
+        assertWithinBucket(10, summary.getP95Millis());
+        assertWithinBucket(40, summary.getP99Millis());
+        Assert.assertEquals(TickProfiler.bucketValue(TickProfiler.bucket(200_000_000L)) / 1.0E6D, summary.getPercentileMillis(1.0), DELTA);
+
+        Assert.assertEquals("Other phases should not see the samples", 0, times.getSummary(TickTimes.Phase.ENTITIES).getCount());
+    }
+
+    @Test
+    public void testRecentTicks()
+    {
+        TickTimes times = new TickTimes();
+        times.recordTick(5, 1234);
+        times.recordTick(107, 5678);
+        Assert.assertEquals(1234, times.getRecentTicks()[5]);
+        Assert.assertEquals(5678, times.getRecentTicks()[7]);
+        Assert.assertEquals(2, times.getSummary(TickTimes.Phase.TICK).getCount());
+    }
+
+    @Test
+    public void testDimensionPhases()
+    {
+        TickTimes times = new TickTimes();
+        times.startEntities();
+        times.startTileEntities();
+        times.endTileEntities();
+        Assert.assertEquals(1, times.getSummary(TickTimes.Phase.ENTITIES).getCount());
+        Assert.assertEquals(1, times.getSummary(TickTimes.Phase.TILE_ENTITIES).getCount());
+    }
+
+    @Test
+    public void testIdleDimension()
+    {
+        // Dimensions without players skip the update after startEntities, but the server still ends the tile entity phase
+        TickTimes times = new TickTimes();
+        times.startEntities();
+        times.endTileEntities();
+        times.endTileEntities();
+        Assert.assertEquals(0, times.getSummary(TickTimes.Phase.ENTITIES).getCount());
+        Assert.assertEquals("The tile entity phase never started", 0, times.getSummary(TickTimes.Phase.TILE_ENTITIES).getCount());
+
+        times.startTileEntities();
+        times.endTileEntities();
+        Assert.assertEquals("The entity phase should only be recorded once it started", 0, times.getSummary(TickTimes.Phase.ENTITIES).getCount());
+        Assert.assertEquals(1, times.getSummary(TickTimes.Phase.TILE_ENTITIES).getCount());
+    }
+
+    private static void assertWithinBucket(double expectedMillis, double actualMillis)
+    {
+        Assert.assertTrue("Expected about " + expectedMillis + "ms but was " + actualMillis + "ms",
+                actualMillis <= expectedMillis && actualMillis > expectedMillis * 0.75D);
+    }
+}
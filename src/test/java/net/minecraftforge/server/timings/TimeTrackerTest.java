@@ -0,0 +1,90 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.server.timings;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeTrackerTest
+{
+    @Test
+    public void testDisabled()
+    {
+        TimeTracker<Object> tracker = new TimeTracker<>();
+        Object tracked = new Object();
+        tracker.trackStart(tracked);
+        tracker.trackEnd(tracked);
+        Assert.assertTrue("Nothing should be recorded before the tracker is enabled", tracker.getTimingData().isEmpty());
+    }
+
+    @Test
+    public void testTracking()
+    {
+        TimeTracker<Object> tracker = new TimeTracker<>();
+        Object tracked = new Object();
+        tracker.enable(60);
+        for (int x = 0; x < 3; x++)
+        {
+            tracker.trackStart(tracked);
+            tracker.trackEnd(tracked);
+        }
+
+        List<ForgeTimings<Object>> data = tracker.getTimingData();
+        Assert.assertEquals(1, data.size());
+        Assert.assertSame(tracked, data.get(0).getObject().get());
+        int[] raw = data.get(0).getRawTimingData();
+        Assert.assertEquals(99, raw.length);
+        for (int x = 1; x <= 3; x++)
+            Assert.assertTrue("Update times should not be negative", raw[x] >= 0);
+        for (int x = 4; x < raw.length; x++)
+            Assert.assertEquals("Only three updates were tracked", 0, raw[x]);
+    }
+
+    @Test
+    public void testMismatchedEnd()
+    {
+        TimeTracker<Object> tracker = new TimeTracker<>();
+        Object first = new Object();
+        Object second = new Object();
+        tracker.enable(60);
+        tracker.trackStart(first);
+        tracker.trackEnd(second);
+        tracker.trackEnd(first);
+        Assert.assertTrue("An end for another object should drop the running timing", tracker.getTimingData().isEmpty());
+    }
+
+    @Test
+    public void testReset()
+    {
+        TimeTracker<Object> tracker = new TimeTracker<>();
+        Object tracked = new Object();
+        tracker.enable(60);
+        tracker.trackStart(tracked);
+        tracker.trackEnd(tracked);
+        tracker.reset();
+        Assert.assertTrue(tracker.getTimingData().isEmpty());
+
+        tracker.trackStart(tracked);
+        tracker.trackEnd(tracked);
+        Assert.assertTrue("Resetting should disable the tracker", tracker.getTimingData().isEmpty());
+    }
+}
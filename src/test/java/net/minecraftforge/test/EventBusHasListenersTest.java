@@ -0,0 +1,208 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.test;
+
+import net.minecraftforge.fml.common.Loader;
+import net.minecraftforge.fml.common.eventhandler.Event;
+import net.minecraftforge.fml.common.eventhandler.EventBus;
+import net.minecraftforge.fml.common.eventhandler.GenericEvent;
+import net.minecraftforge.fml.common.eventhandler.ListenerList;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EventBusHasListenersTest
+{
+    // The events get their own listener lists by hand, the way the event transformer sets them up at runtime
+    private static final ListenerList EVENT_LIST = new Event().getListenerList();
+
+    private EventBus bus;
+
+    @BeforeClass
+    public static void setupClass()
+    {
+        Loader.instance();
+    }
+
+    @Before
+    public void setup()
+    {
+        bus = new EventBus();
+    }
+
+    @Test
+    public void testNoListeners()
+    {
+        Assert.assertFalse(bus.hasListeners(ParentEvent.class));
+        Assert.assertFalse(bus.hasListeners(ChildEvent.class));
+        Assert.assertFalse(bus.hasListeners(TypedEvent.class, String.class));
+    }
+
+    @Test
+    public void testRegisterAndUnregister()
+    {
+        ChildHandler handler = new ChildHandler();
+        bus.register(handler);
+        Assert.assertTrue(bus.hasListeners(ChildEvent.class));
+        Assert.assertFalse("Listeners of a sub class should not count for the parent", bus.hasListeners(ParentEvent.class));
+
+        bus.unregister(handler);
+        Assert.assertFalse(bus.hasListeners(ChildEvent.class));
+    }
+
+    @Test
+    public void testParentListeners()
+    {
+        ParentHandler handler = new ParentHandler();
+        bus.register(handler);
+        Assert.assertTrue(bus.hasListeners(ParentEvent.class));
+        Assert.assertTrue("Listeners of the parent class should count for the sub class", bus.hasListeners(ChildEvent.class));
+
+        bus.unregister(handler);
+        Assert.assertFalse(bus.hasListeners(ChildEvent.class));
+    }
+
+    @Test
+    public void testOtherBus()
+    {
+        EventBus other = new EventBus();
+        other.register(new ParentHandler());
+        Assert.assertTrue(other.hasListeners(ParentEvent.class));
+        Assert.assertFalse("Listeners on another bus should not count", bus.hasListeners(ParentEvent.class));
+    }
+
+    @Test
+    public void testGenericListeners()
+    {
+        bus.register(new StringHandler());
+        Assert.assertTrue(bus.hasListeners(TypedEvent.class));
+        Assert.assertTrue(bus.hasListeners(TypedEvent.class, String.class));
+        Assert.assertFalse("Listeners for another generic type should not count", bus.hasListeners(TypedEvent.class, Integer.class));
+
+        RawHandler raw = new RawHandler();
+        bus.register(raw);
+        Assert.assertTrue("Raw listeners should count for every generic type", bus.hasListeners(TypedEvent.class, Integer.class));
+
+        bus.unregister(raw);
+        Assert.assertFalse("The cached answer should be dropped when the listeners change", bus.hasListeners(TypedEvent.class, Integer.class));
+        Assert.assertTrue(bus.hasListeners(TypedEvent.class, String.class));
+    }
+
+    @Test
+    public void testWildcardListeners()
+    {
+        bus.register(new WildcardHandler());
+        Assert.assertFalse("Wildcard listeners are never invoked, so they should not count", bus.hasListeners(TypedEvent.class, String.class));
+    }
+
+    @Test
+    public void testUnresolvableEvent()
+    {
+        Assert.assertTrue("Events without a default constructor should be assumed to have listeners", bus.hasListeners(NoDefaultConstructorEvent.class));
+    }
+
+    public static class ParentEvent extends Event
+    {
+        private static final ListenerList LISTENERS = new ListenerList(EVENT_LIST);
+
+        @Override
+        public ListenerList getListenerList()
+        {
+            return LISTENERS;
+        }
+    }
+
+    public static class ChildEvent extends ParentEvent
+    {
+        private static final ListenerList LISTENERS = new ListenerList(ParentEvent.LISTENERS);
+
+        @Override
+        public ListenerList getListenerList()
+        {
+            return LISTENERS;
+        }
+    }
+
+    public static class TypedEvent<T> extends GenericEvent<T>
+    {
+        private static final ListenerList LISTENERS = new ListenerList(EVENT_LIST);
+
+        public TypedEvent()
+        {
+            super(null);
+        }
+
+        @Override
+        public ListenerList getListenerList()
+        {
+            return LISTENERS;
+        }
+    }
+
+    public static class NoDefaultConstructorEvent extends Event
+    {
+        public NoDefaultConstructorEvent(String value)
+        {
+        }
+    }
+
+    public static class ParentHandler
+    {
+        @SubscribeEvent
+        public void onParent(ParentEvent event)
+        {
+        }
+    }
+
+    public static class ChildHandler
+    {
+        @SubscribeEvent
+        public void onChild(ChildEvent event)
+        {
+        }
+    }
+
+    public static class StringHandler
+    {
+        @SubscribeEvent
+        public void onString(TypedEvent<String> event)
+        {
+        }
+    }
+
+    public static class RawHandler
+    {
+        @SuppressWarnings("rawtypes")
+        @SubscribeEvent
+        public void onAny(TypedEvent event)
+        {
+        }
+    }
+
+    public static class WildcardHandler
+    {
+        @SubscribeEvent
+        public void onWildcard(TypedEvent<?> event)
+        {
+        }
+    }
+}
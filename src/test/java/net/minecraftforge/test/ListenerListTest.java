@@ -0,0 +1,192 @@
+/*
+ * Minecraft Forge
+ * Copyright (c) 2016.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.minecraftforge.fml.common.eventhandler.Event;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.IEventListener;
+import net.minecraftforge.fml.common.eventhandler.ListenerList;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ListenerListTest
+{
+    private static final int BUS = 0;
+
+    private ListenerList parent;
+    private ListenerList child;
+
+    @Before
+    public void setup()
+    {
+        ListenerList.resize(BUS + 1);
+        parent = new ListenerList();
+        child = new ListenerList(parent);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        Assert.assertEquals("A list without listeners should have no phase markers", 0, child.getListeners(BUS).length);
+    }
+
+    @Test
+    public void testPriorityOrder()
+    {
+        IEventListener normal = new Listener("normal");
+        IEventListener high = new Listener("high");
+        IEventListener lowest = new Listener("lowest");
+        child.register(BUS, EventPriority.NORMAL, normal);
+        child.register(BUS, EventPriority.LOWEST, lowest);
+        child.register(BUS, EventPriority.HIGH, high);
+
+        Assert.assertArrayEquals("Listeners should be sorted by priority, with a marker only for the used priorities",
+                new IEventListener[] { EventPriority.HIGH, high, EventPriority.NORMAL, normal, EventPriority.LOWEST, lowest },
+                child.getListeners(BUS));
+    }
+
+    @Test
+    public void testChildBeforeParent()
+    {
+        IEventListener parentNormal = new Listener("parentNormal");
+        IEventListener parentHighest = new Listener("parentHighest");
+        IEventListener childNormal = new Listener("childNormal");
+        parent.register(BUS, EventPriority.NORMAL, parentNormal);
+        parent.register(BUS, EventPriority.HIGHEST, parentHighest);
+        child.register(BUS, EventPriority.NORMAL, childNormal);
+
+        Assert.assertArrayEquals("Child listeners should come before parent listeners of the same priority",
+                new IEventListener[] { EventPriority.HIGHEST, parentHighest, EventPriority.NORMAL, childNormal, parentNormal },
+                child.getListeners(BUS));
+        Assert.assertArrayEquals("Parent lists should not see child listeners",
+                new IEventListener[] { EventPriority.HIGHEST, parentHighest, EventPriority.NORMAL, parentNormal },
+                parent.getListeners(BUS));
+    }
+
+    @Test
+    public void testCopyOnWrite()
+    {
+        IEventListener first = new Listener("first");
+        IEventListener second = new Listener("second");
+        child.register(BUS, EventPriority.NORMAL, first);
+
+        IEventListener[] before = child.getListeners(BUS);
+        Assert.assertSame("The array should be cached while the listeners do not change", before, child.getListeners(BUS));
+
+        child.register(BUS, EventPriority.NORMAL, second);
+        Assert.assertArrayEquals("Registering should not modify a previously returned array",
+                new IEventListener[] { EventPriority.NORMAL, first }, before);
+        IEventListener[] after = child.getListeners(BUS);
+        Assert.assertNotSame("Registering should rebuild the array", before, after);
+        Assert.assertArrayEquals(new IEventListener[] { EventPriority.NORMAL, first, second }, after);
+
+        child.unregister(BUS, first);
+        Assert.assertArrayEquals("Unregistering should not modify a previously returned array",
+                new IEventListener[] { EventPriority.NORMAL, first, second }, after);
+        Assert.assertArrayEquals(new IEventListener[] { EventPriority.NORMAL, second }, child.getListeners(BUS));
+    }
+
+    @Test
+    public void testParentChangeRebuildsChild()
+    {
+        IEventListener[] before = child.getListeners(BUS);
+        IEventListener listener = new Listener("parent");
+        parent.register(BUS, EventPriority.LOW, listener);
+
+        Assert.assertNotSame("Registering to a parent should rebuild the child array", before, child.getListeners(BUS));
+        Assert.assertArrayEquals(new IEventListener[] { EventPriority.LOW, listener }, child.getListeners(BUS));
+
+        parent.unregister(BUS, listener);
+        Assert.assertEquals("Unregistering from a parent should rebuild the child array", 0, child.getListeners(BUS).length);
+    }
+
+    @Test
+    public void testModifyDuringDispatch()
+    {
+        List<String> calls = new ArrayList<>();
+        IEventListener late = new Listener("late", calls);
+        IEventListener third = new Listener("third", calls);
+        IEventListener first = new Listener("first", calls)
+        {
+            @Override
+            public void invoke(Event event)
+            {
+                super.invoke(event);
+                child.unregister(BUS, this);
+                child.unregister(BUS, third);
+                child.register(BUS, EventPriority.NORMAL, late);
+            }
+        };
+        IEventListener second = new Listener("second", calls);
+        child.register(BUS, EventPriority.NORMAL, first);
+        child.register(BUS, EventPriority.NORMAL, second);
+        child.register(BUS, EventPriority.NORMAL, third);
+
+        dispatch(child.getListeners(BUS));
+        Assert.assertEquals("A dispatch in progress should use the listeners from when it started",
+                Arrays.asList("first", "second", "third"), calls);
+
+        calls.clear();
+        dispatch(child.getListeners(BUS));
+        Assert.assertEquals("The next dispatch should see the changes made during the previous one",
+                Arrays.asList("second", "late"), calls);
+    }
+
+    private static void dispatch(IEventListener[] listeners)
+    {
+        Event event = new Event();
+        for (IEventListener listener : listeners)
+            listener.invoke(event);
+    }
+
+    private static class Listener implements IEventListener
+    {
+        private final String name;
+        private final List<String> calls;
+
+        private Listener(String name)
+        {
+            this(name, new ArrayList<>());
+        }
+
+        private Listener(String name, List<String> calls)
+        {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public void invoke(Event event)
+        {
+            calls.add(name);
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+}